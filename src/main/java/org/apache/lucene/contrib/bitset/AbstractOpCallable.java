@@ -29,8 +29,13 @@ abstract class AbstractOpCallable<T> implements Callable<T> {
   protected final int finalBitsetSize;
   protected final int fromIndex;
   protected final int toIndex;
+  protected final CancellationToken token;
 
   public AbstractOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize) {
+    this(bs, fromIndex, toIndex, finalBitsetSize, null);
+  }
+
+  public AbstractOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final CancellationToken token) {
     if (bs == null || bs.length == 0) {
       throw new IllegalArgumentException("bit sets cannot be null or empty");
     }
@@ -38,5 +43,14 @@ abstract class AbstractOpCallable<T> implements Callable<T> {
     this.fromIndex = fromIndex;
     this.toIndex = toIndex;
     this.finalBitsetSize = finalBitsetSize;
+    this.token = token;
+  }
+
+  /**
+   * @param processed the number of bitsets processed so far
+   * @return true if the token, if any, asks to stop; checked every {@link CancellationToken#CHECK_INTERVAL} bitsets
+   */
+  protected final boolean shouldStop(final int processed) {
+    return token != null && processed % CancellationToken.CHECK_INTERVAL == 0 && token.shouldStop();
   }
 }
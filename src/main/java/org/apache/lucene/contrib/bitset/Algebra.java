@@ -0,0 +1,137 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.contrib.bitset.ops.AlgebraicOp;
+import org.apache.lucene.contrib.bitset.ops.AssociativeOp;
+import org.apache.lucene.contrib.bitset.ops.Element;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+
+/**
+ * Executor side use of the properties declared by an {@link AlgebraicOp}. Operations that do not declare them are assumed to be commutative, as the executor always did, and get no other treatment
+ */
+final class Algebra {
+
+    private Algebra() {
+        // empty
+    }
+
+    /**
+     * @param operation an operation
+     * @return true if partial results of slices can be merged with the operation itself
+     */
+    static boolean isCommutative(final AssociativeOp operation) {
+        return !(operation instanceof AlgebraicOp) || ((AlgebraicOp) operation).isCommutative();
+    }
+
+    /**
+     * @param operation an operation
+     * @return the annihilator of the operation, {@link Element#NONE} if it has none or does not declare it
+     */
+    static Element annihilator(final AssociativeOp operation) {
+        return operation instanceof AlgebraicOp ? ((AlgebraicOp) operation).annihilator() : Element.NONE;
+    }
+
+    /**
+     * @param element         {@link Element#EMPTY} or {@link Element#FULL}
+     * @param finalBitsetSize the final bitset size
+     * @return a new bitset equal to the given element
+     */
+    static MutableBitSet bitsetOf(final Element element, final int finalBitsetSize) {
+        MutableBitSet bitset = new MutableBitSet(finalBitsetSize);
+        if (element == Element.FULL) {
+            fill(bitset, finalBitsetSize);
+        }
+        return bitset;
+    }
+
+    private static void fill(final MutableBitSet bitset, final int finalBitsetSize) {
+        long[] words = BitSetWords.words(bitset);
+        int numWords = BitSetWords.bits2words(finalBitsetSize);
+        for (int w = 0; w < numWords; w++) {
+            words[w] = -1L;
+        }
+        if (finalBitsetSize % 64 != 0) {
+            words[numWords - 1] = -1L >>> (64 - finalBitsetSize % 64);
+        }
+    }
+
+    /**
+     * Simplifies the input array of an operation: a bitset repeated for an idempotent operation is kept once, pairs of the same bitset cancel out for a self-inverse one.<br/>
+     * Bitsets are compared by identity, which is cheap and catches the common case of a filter reused in the same query. The first bitset stays first unless the operation is commutative
+     *
+     * @param bs              the input array
+     * @param operation       the operation
+     * @param finalBitsetSize the final bitset size
+     * @return the given array if nothing could be simplified, a new one otherwise; if every bitset cancelled out, an array holding the identity of the operation
+     */
+    static ImmutableBitSet[] simplify(final ImmutableBitSet[] bs, final AssociativeOp operation, final int finalBitsetSize) {
+        if (!(operation instanceof AlgebraicOp) || bs.length < 2) {
+            return bs;
+        }
+        AlgebraicOp algebraicOp = (AlgebraicOp) operation;
+        boolean commutative = algebraicOp.isCommutative();
+        if (algebraicOp.isSelfInverse() && commutative) {
+            ImmutableBitSet[] kept = cancelPairs(bs);
+            return kept.length > 0 ? kept : new ImmutableBitSet[]{bitsetOf(algebraicOp.identity(), finalBitsetSize).immutableCopy()};
+        }
+        if (algebraicOp.isIdempotent()) {
+            return dedupe(bs, commutative ? 0 : 1);
+        }
+        return bs;
+    }
+
+    private static ImmutableBitSet[] dedupe(final ImmutableBitSet[] bs, final int from) {
+        Map<ImmutableBitSet, Boolean> seen = new IdentityHashMap<ImmutableBitSet, Boolean>(bs.length);
+        List<ImmutableBitSet> kept = new ArrayList<ImmutableBitSet>(bs.length);
+        for (int i = 0; i < bs.length; i++) {
+            if (i < from || seen.put(bs[i], Boolean.TRUE) == null) {
+                kept.add(bs[i]);
+            }
+        }
+        return kept.size() == bs.length ? bs : kept.toArray(new ImmutableBitSet[kept.size()]);
+    }
+
+    private static ImmutableBitSet[] cancelPairs(final ImmutableBitSet[] bs) {
+        Map<ImmutableBitSet, Integer> occurrences = new IdentityHashMap<ImmutableBitSet, Integer>(bs.length);
+        for (ImmutableBitSet bitset : bs) {
+            Integer count = occurrences.get(bitset);
+            occurrences.put(bitset, count == null ? 1 : count + 1);
+        }
+        if (occurrences.size() == bs.length) {
+            return bs;
+        }
+        List<ImmutableBitSet> kept = new ArrayList<ImmutableBitSet>(occurrences.size());
+        for (ImmutableBitSet bitset : bs) {
+            Integer count = occurrences.remove(bitset);
+            if (count != null && count % 2 == 1) {
+                kept.add(bitset);
+            }
+        }
+        return kept.toArray(new ImmutableBitSet[kept.size()]);
+    }
+}
@@ -28,7 +28,21 @@ class ArrayUtils {
 
   @SuppressWarnings({"unchecked"})
   public static <T> T[] typedArray(Object[] src) {
-    T[] dest = (T[]) Array.newInstance(src[0].getClass(), src.length);
+    // elements may be null when an operation was stopped early, type after the first one that is not
+    Class<?> componentType = null;
+    for (int i = 0; i < src.length && componentType == null; i++) {
+      componentType = src[i] == null ? null : src[i].getClass();
+    }
+    for (int i = 0; i < src.length && componentType != null; i++) {
+      if (src[i] != null && !componentType.isInstance(src[i])) {
+        // mixed types, no narrower array can hold them all
+        componentType = null;
+      }
+    }
+    if (componentType == null) {
+      return (T[]) src;
+    }
+    T[] dest = (T[]) Array.newInstance(componentType, src.length);
     System.arraycopy(src, 0, dest, 0, src.length);
     return dest;
   }
@@ -50,6 +64,20 @@ class ArrayUtils {
     return typedArray(result);
   }
 
+  /**
+   * Concatenates the results of slices, typing the array once from its elements: a slice stopped before its first element returns an untyped array of nulls, so the type of the first slice cannot be trusted
+   */
+  public static <T> T[] flatten(List<Future<T[]>> futureOps, int length) throws ExecutionException, InterruptedException {
+    Object[] result = new Object[length];
+    int lastIndex = 0;
+    for (Future<T[]> op : futureOps) {
+      Object[] partial = op.get();
+      System.arraycopy(partial, 0, result, lastIndex, partial.length);
+      lastIndex += partial.length;
+    }
+    return typedArray(result);
+  }
+
   public static <T> T[] toArray(List<Future<T>> futureOps) throws ExecutionException, InterruptedException {
     Object[] accumulated = new Object[futureOps.size()];
     int i = 0;
@@ -60,10 +88,30 @@ class ArrayUtils {
     return ArrayUtils.typedArray(accumulated);
   }
 
+  public static boolean allNull(Object[] src) {
+    for (Object o : src) {
+      if (o != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static void await(List<? extends Future<?>> futureOps) throws ExecutionException, InterruptedException {
+    for (Future<?> op : futureOps) {
+      op.get();
+    }
+  }
+
   @SuppressWarnings({"unchecked"})
   public static <T> T[] accumulateMatrix(List<Future<T[]>> futureOps) throws ExecutionException, InterruptedException {
-    T[][] partitionResults = toArray(futureOps);
-    return ArrayUtils.flatten(partitionResults);
+    Object[][] partitionResults = new Object[futureOps.size()][];
+    int i = 0;
+    for (Future<T[]> op : futureOps) {
+      partitionResults[i] = op.get();
+      i++;
+    }
+    return (T[]) ArrayUtils.flatten(partitionResults);
   }
 
 }
@@ -27,16 +27,44 @@ import org.dishevelled.bitset.MutableBitSet;
 class AssociativeOpCallable extends AbstractOpCallable<MutableBitSet> {
 
     private final AssociativeOp operation;
+    private final ShortCircuit shortCircuit;
 
     public AssociativeOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final AssociativeOp operation) {
-        super(bs, fromIndex, toIndex, finalBitsetSize);
+        this(bs, fromIndex, toIndex, finalBitsetSize, operation, null, null);
+    }
+
+    public AssociativeOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final AssociativeOp operation, final CancellationToken token) {
+        this(bs, fromIndex, toIndex, finalBitsetSize, operation, token, null);
+    }
+
+    public AssociativeOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final AssociativeOp operation, final CancellationToken token, final ShortCircuit shortCircuit) {
+        super(bs, fromIndex, toIndex, finalBitsetSize, token);
         this.operation = operation;
+        this.shortCircuit = shortCircuit;
     }
 
     @Override
-    public MutableBitSet call() throws Exception {
+    public MutableBitSet call() {
         MutableBitSet accumulator = new MutableBitSet(finalBitsetSize);
+        if (fromIndex < toIndex) {
+            // seed with the first bitset of the slice, so that the partial result is the real reduction of [fromIndex, toIndex)
+            accumulator.or(bs[fromIndex]);
+        }
+        int cursor = 0;
         for (int i = fromIndex + 1; i < toIndex; i++) {
+            if (shouldStop(i - fromIndex - 1)) {
+                break;
+            }
+            if (shortCircuit != null) {
+                // the result is known as soon as any accumulator is annihilated, whatever the slice it belongs to
+                if (shortCircuit.isAnnihilated()) {
+                    break;
+                }
+                cursor = shortCircuit.advance(accumulator, cursor);
+                if (shortCircuit.isAnnihilated()) {
+                    break;
+                }
+            }
             operation.compute(accumulator, bs[i]);
         }
         return accumulator;
@@ -0,0 +1,93 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Submits a list of slices and completes a future from the thread of the last slice to finish, so nobody waits for the slices.<br/>
+ * The first failing slice completes the future exceptionally; slices not started yet are then skipped
+ *
+ * @param <T> the result of a slice
+ * @param <R> the result of the whole operation
+ */
+abstract class AsyncSlices<T, R> {
+
+    private final CompletableFuture<R> future = new CompletableFuture<R>();
+
+    public CompletableFuture<R> submit(final ExecutorService threadPool, final List<Callable<T>> ops) {
+        final Object[] results = new Object[ops.size()];
+        final AtomicInteger remaining = new AtomicInteger(ops.size());
+        if (results.length == 0) {
+            // no slice would ever finish the operation
+            try {
+                future.complete(finish(results));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+            return future;
+        }
+        for (int i = 0; i < results.length; i++) {
+            final int index = i;
+            final Callable<T> op = ops.get(i);
+            try {
+                threadPool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (future.isDone()) {
+                            return;
+                        }
+                        try {
+                            results[index] = op.call();
+                        } catch (Throwable t) {
+                            future.completeExceptionally(t);
+                            return;
+                        }
+                        // the decrement publishes results[index] to the thread finishing the operation
+                        if (remaining.decrementAndGet() == 0) {
+                            try {
+                                future.complete(finish(results));
+                            } catch (Throwable t) {
+                                future.completeExceptionally(t);
+                            }
+                        }
+                    }
+                });
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+                break;
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Called once, by the thread of the last slice to finish, or by the submitting thread when there are no slices
+     *
+     * @param results the result of each slice, in submission order
+     * @return the result of the whole operation
+     * @throws Exception if the results cannot be combined
+     */
+    protected abstract R finish(Object[] results) throws Exception;
+}
@@ -0,0 +1,123 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.concurrent.Callable;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Counts, for every bit of the words [fromWord, toWord), how many of the bitsets have it set.<br/>
+ * The counts of a block of words are kept bit-sliced: plane p holds bit p of the count of every position, so one word of a bitset is added to 64 counters at once with a handful of word operations. The bitsets are added two at a time through a carry-save adder, which folds them into the ones plane and leaves a single carry to ripple through the higher planes. The planes are unpacked into the int counts once the block has seen every bitset
+ */
+class BitCountCallable implements Callable<Void> {
+
+    private final ImmutableBitSet[] bs;
+    private final int[] counts;
+    private final int fromWord;
+    private final int toWord;
+
+    public BitCountCallable(final ImmutableBitSet[] bs, final int[] counts, final int fromWord, final int toWord) {
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        this.bs = bs;
+        this.counts = counts;
+        this.fromWord = fromWord;
+        this.toWord = toWord;
+    }
+
+    @Override
+    public Void call() {
+        // enough planes for a count of bs.length
+        int numPlanes = 32 - Integer.numberOfLeadingZeros(bs.length);
+        long[][] planes = new long[numPlanes][BitSetWords.BLOCK_WORDS];
+        for (int from = fromWord; from < toWord; from += BitSetWords.BLOCK_WORDS) {
+            int length = Math.min(BitSetWords.BLOCK_WORDS, toWord - from);
+            for (long[] plane : planes) {
+                for (int w = 0; w < length; w++) {
+                    plane[w] = 0L;
+                }
+            }
+            int i = 0;
+            for (; i + 1 < bs.length; i += 2) {
+                addPair(planes, from, length, bs[i], bs[i + 1]);
+            }
+            if (i < bs.length) {
+                addOne(planes, from, length, bs[i]);
+            }
+            unpack(planes, from, length);
+        }
+        return null;
+    }
+
+    private static void addPair(final long[][] planes, final int from, final int length, final ImmutableBitSet first, final ImmutableBitSet second) {
+        long[] firstWords = BitSetWords.words(first);
+        long[] secondWords = BitSetWords.words(second);
+        int firstLength = BitSetWords.wordsInBlock(BitSetWords.numWords(first), from, length);
+        int secondLength = BitSetWords.wordsInBlock(BitSetWords.numWords(second), from, length);
+        long[] ones = planes[0];
+        for (int w = 0; w < Math.max(firstLength, secondLength); w++) {
+            long a = w < firstLength ? firstWords[from + w] : 0L;
+            long b = w < secondLength ? secondWords[from + w] : 0L;
+            // carry-save adder: ones + a + b = sum + 2 carry
+            long u = ones[w] ^ a;
+            long carry = (ones[w] & a) | (u & b);
+            ones[w] = u ^ b;
+            for (int p = 1; carry != 0L; p++) {
+                long plane = planes[p][w];
+                planes[p][w] = plane ^ carry;
+                carry &= plane;
+            }
+        }
+    }
+
+    private static void addOne(final long[][] planes, final int from, final int length, final ImmutableBitSet bitset) {
+        long[] words = BitSetWords.words(bitset);
+        int last = BitSetWords.wordsInBlock(BitSetWords.numWords(bitset), from, length);
+        for (int w = 0; w < last; w++) {
+            long carry = words[from + w];
+            for (int p = 0; carry != 0L; p++) {
+                long plane = planes[p][w];
+                planes[p][w] = plane ^ carry;
+                carry &= plane;
+            }
+        }
+    }
+
+    private void unpack(final long[][] planes, final int from, final int length) {
+        for (int w = 0; w < length; w++) {
+            int base = (from + w) << 6;
+            int limit = Math.min(64, counts.length - base);
+            for (int p = 0; p < planes.length; p++) {
+                long plane = planes[p][w];
+                while (plane != 0L) {
+                    int bit = Long.numberOfTrailingZeros(plane);
+                    if (bit >= limit) {
+                        // past the final bitset size
+                        break;
+                    }
+                    counts[base + bit] += 1 << p;
+                    plane &= plane - 1L;
+                }
+            }
+        }
+    }
+}
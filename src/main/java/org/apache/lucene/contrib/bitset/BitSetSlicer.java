@@ -19,35 +19,43 @@
 
 package org.apache.lucene.contrib.bitset;
 
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 
-import org.dishevelled.bitset.AbstractBitSet;
 import org.dishevelled.bitset.ImmutableBitSet;
 
 abstract class BitSetSlicer<T> {
 
-    public Collection<Callable<T>> sliceBitsets(final ImmutableBitSet[] bs) {
-        int sliceSize = bs.length / Runtime.getRuntime().availableProcessors(); // make this configurable
+    private final SlicingPolicy policy;
+    private final int parallelism;
 
-        int numOfOps = bs.length / sliceSize;
-        if (bs.length % sliceSize != 0) {
-            numOfOps++;
-        }
+    protected BitSetSlicer(final SlicingPolicy policy, final int parallelism) {
+        this.policy = policy;
+        this.parallelism = parallelism;
+    }
+
+    public List<Callable<T>> sliceBitsets(final ImmutableBitSet[] bs) {
+        int[] bounds = policy.slice(bs, parallelism);
+        checkBounds(bounds, bs.length);
 
-        Collection<Callable<T>> ops = new LinkedList<Callable<T>>();
-        for (int i = 0; i < numOfOps; i++) {
-            int startIndex = i * sliceSize;
-            ops.add(newOpCallable(bs, startIndex, lastIndex(bs.length, startIndex, sliceSize)));
+        List<Callable<T>> ops = new ArrayList<Callable<T>>(bounds.length - 1);
+        for (int i = 0; i < bounds.length - 1; i++) {
+            ops.add(newOpCallable(bs, bounds[i], bounds[i + 1]));
         }
         return ops;
     }
 
     protected abstract Callable<T> newOpCallable(ImmutableBitSet[] bs, int startIndex, int i);
 
-    private int lastIndex(final int numberOfBitsets, final int startIndex, final int sliceSize) {
-        int remaining = numberOfBitsets - startIndex;
-        return remaining > sliceSize ? startIndex + sliceSize : startIndex + remaining;
+    private void checkBounds(final int[] bounds, final int numberOfBitsets) {
+        if (bounds == null || bounds.length < 2 || bounds[0] != 0 || bounds[bounds.length - 1] != numberOfBitsets) {
+            throw new IllegalStateException(policy.getClass().getName() + " must return bounds from 0 to " + numberOfBitsets);
+        }
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalStateException(policy.getClass().getName() + " must return strictly increasing bounds");
+            }
+        }
     }
 }
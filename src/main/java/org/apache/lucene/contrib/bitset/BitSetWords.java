@@ -0,0 +1,124 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.lang.reflect.Field;
+
+import org.dishevelled.bitset.AbstractBitSet;
+
+/**
+ * Word level access to the backing array of a bitset. dsh-bitset keeps its 64-bit words in protected fields, so they are read here once, reflectively, and never copied.<br/><br/>
+ * Arrays returned for an {@link org.dishevelled.bitset.ImmutableBitSet} must be treated as read only.
+ */
+final class BitSetWords {
+
+    /**
+     * The number of words processed together by the callables working a block of words at a time: 512 bytes, so the block buffers of a task stay in the L1 cache
+     */
+    static final int BLOCK_WORDS = 64;
+
+    private static final Field BITS = field("bits");
+    private static final Field WLEN = field("wlen");
+
+    private BitSetWords() {
+        // empty
+    }
+
+    /**
+     * @param bitset a bitset
+     * @return the backing array of the given bitset, whose length may exceed {@link #numWords(AbstractBitSet)}
+     */
+    static long[] words(final AbstractBitSet bitset) {
+        try {
+            return (long[]) BITS.get(bitset);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param bitset a bitset
+     * @return the number of words in use in the given bitset
+     */
+    static int numWords(final AbstractBitSet bitset) {
+        try {
+            return WLEN.getInt(bitset);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param numBits a number of bits
+     * @return the number of 64-bit words needed to hold them
+     */
+    static int bits2words(final long numBits) {
+        return (int) ((numBits + 63) >>> 6);
+    }
+
+    /**
+     * @param numWords the number of words in use in a bitset
+     * @param from     the first word of a block
+     * @param length   the number of words of the block
+     * @return how many words of the block are in use in the bitset, those past them being zero
+     */
+    static int wordsInBlock(final int numWords, final int from, final int length) {
+        return Math.max(0, Math.min(length, numWords - from));
+    }
+
+    /**
+     * Copies the words [from, from + length) of a bitset into block, zero past the words in use
+     *
+     * @param block    the buffer to fill, from index 0
+     * @param words    the backing array of the bitset
+     * @param numWords the number of words in use in the bitset
+     */
+    static void load(final long[] block, final long[] words, final int numWords, final int from, final int length) {
+        int last = wordsInBlock(numWords, from, length);
+        if (last > 0) {
+            System.arraycopy(words, from, block, 0, last);
+        }
+        for (int w = last; w < length; w++) {
+            block[w] = 0L;
+        }
+    }
+
+    /**
+     * @return true if the first length words are all equal to value
+     */
+    static boolean all(final long[] words, final int length, final long value) {
+        for (int w = 0; w < length; w++) {
+            if (words[w] != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Field field(final String name) {
+        try {
+            Field field = AbstractBitSet.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("unsupported dsh-bitset version, missing AbstractBitSet." + name, e);
+        }
+    }
+}
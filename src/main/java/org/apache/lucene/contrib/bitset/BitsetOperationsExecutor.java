@@ -19,27 +19,51 @@
 
 package org.apache.lucene.contrib.bitset;
 
+import org.apache.lucene.contrib.bitset.ops.AlgebraicOp;
 import org.apache.lucene.contrib.bitset.ops.AssociativeOp;
+import org.apache.lucene.contrib.bitset.ops.BaseOperandOp;
 import org.apache.lucene.contrib.bitset.ops.ComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.CompositeComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.DoubleComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.Element;
+import org.apache.lucene.contrib.bitset.ops.IntComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.apache.lucene.contrib.bitset.ops.LongComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.OverlapSimilarity;
+import org.apache.lucene.contrib.bitset.ops.WordwiseComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.WordwiseOp;
 
 import org.dishevelled.bitset.MutableBitSet;
 import org.dishevelled.bitset.ImmutableBitSet;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Function;
 
 /**
  * BitsetOperationsExecutor is the entry point for performing bitset operations.<br/><br/>
  * You need to create an array of the {@link DocIdSet} you want to operate on, choose the operation to perform (one implementation of {@link org.apache.lucene.contrib.bitset.ops.AssociativeOp} or {@link ComparisonOp}) and call the appropriate perform method.<br/><br/>
- * The input array will be split in as many parts as available cores (as by {@link Runtime#availableProcessors()}), and the given operation will be performed
+ * The input array will be split as decided by the {@link SlicingPolicy} (by default, in as many parts as the parallelism of the thread pool), and the given operation will be performed.<br/><br/>
+ * Whether to go parallel at all is decided by the minArraySize or, when one is given with {@link #withCostModel(CostModel)}, by a {@link CostModel} that also picks the degree of parallelism
  */
 public final class BitsetOperationsExecutor {
     private static final int MIN_ARRAY_SIZE = 20000;
+    private static final int WORDS_PER_CACHE_LINE = Tiling.WORDS_PER_CACHE_LINE;
+    private static final int SEQUENTIAL = 0;
     private final ExecutorService threadPool;
     private final int minArraySize;
+    private final Tiling tiling;
+    private final SlicingPolicy slicingPolicy;
+    private final int parallelism;
+    private final CostModel costModel;
 
     /**
      * Create a new BitsetOperationsExecutor with the default minArraySize
@@ -57,8 +81,66 @@ public final class BitsetOperationsExecutor {
      * @param minArraySize the minimum size of the input array of DocIdSet. If the input array contains less than the given size, the call will NOT trigger a thread and the calculation will be done in the same calling thread
      */
     public BitsetOperationsExecutor(final ExecutorService threadPool, final int minArraySize) {
+        this(threadPool, minArraySize, Tiling.defaultTiling(), SlicingPolicies.fixedCount(), parallelismOf(threadPool), null);
+    }
+
+    private BitsetOperationsExecutor(final ExecutorService threadPool, final int minArraySize, final Tiling tiling, final SlicingPolicy slicingPolicy, final int parallelism, final CostModel costModel) {
+        if (tiling == null) {
+            throw new IllegalArgumentException("tiling cannot be null");
+        }
+        if (slicingPolicy == null) {
+            throw new IllegalArgumentException("slicing policy cannot be null");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, was " + parallelism);
+        }
         this.threadPool = threadPool;
         this.minArraySize = minArraySize;
+        this.tiling = tiling;
+        this.slicingPolicy = slicingPolicy;
+        this.parallelism = parallelism;
+        this.costModel = costModel;
+    }
+
+    /**
+     * Returns a copy of this BitsetOperationsExecutor using the given tiling for {@link ExecutionMode#TILED}
+     *
+     * @param tiling the shape of the tiles
+     * @return a new BitsetOperationsExecutor sharing the thread pool of this one
+     */
+    public BitsetOperationsExecutor withTiling(final Tiling tiling) {
+        return new BitsetOperationsExecutor(threadPool, minArraySize, tiling, slicingPolicy, parallelism, costModel);
+    }
+
+    /**
+     * Returns a copy of this BitsetOperationsExecutor splitting the input array as decided by the given policy
+     *
+     * @param slicingPolicy the policy used to split the input array in slices
+     * @return a new BitsetOperationsExecutor sharing the thread pool of this one
+     */
+    public BitsetOperationsExecutor withSlicingPolicy(final SlicingPolicy slicingPolicy) {
+        return new BitsetOperationsExecutor(threadPool, minArraySize, tiling, slicingPolicy, parallelism, costModel);
+    }
+
+    /**
+     * Returns a copy of this BitsetOperationsExecutor assuming the given parallelism. By default it is the parallelism of a {@link ForkJoinPool}, the maximum pool size of a {@link ThreadPoolExecutor} bounded by the available cores, or the available cores
+     *
+     * @param parallelism the number of tasks the thread pool can run at the same time
+     * @return a new BitsetOperationsExecutor sharing the thread pool of this one
+     */
+    public BitsetOperationsExecutor withParallelism(final int parallelism) {
+        return new BitsetOperationsExecutor(threadPool, minArraySize, tiling, slicingPolicy, parallelism, costModel);
+    }
+
+    /**
+     * Returns a copy of this BitsetOperationsExecutor deciding between sequential and parallel execution, and the degree of parallelism, with the given cost model instead of the minArraySize.<br/><br/>
+     * The work is estimated as bitsets x words of finalBitsetSize x per-word cost; the degree of parallelism never exceeds the parallelism of this executor
+     *
+     * @param costModel the cost model, for example one from {@link CostModel#calibrate(ExecutorService)}; null to go back to the minArraySize
+     * @return a new BitsetOperationsExecutor sharing the thread pool of this one
+     */
+    public BitsetOperationsExecutor withCostModel(final CostModel costModel) {
+        return new BitsetOperationsExecutor(threadPool, minArraySize, tiling, slicingPolicy, parallelism, costModel);
     }
 
     /**
@@ -71,21 +153,270 @@ public final class BitsetOperationsExecutor {
      * @throws Exception
      */
     public MutableBitSet perform(final ImmutableBitSet[] bs, final int finalBitsetSize, final AssociativeOp operation) throws Exception {
-        if (bs.length <= minArraySize) {
-            return new AssociativeOpCallable(bs, 0, bs.length, finalBitsetSize, operation).call();
+        return perform(bs, finalBitsetSize, operation, ExecutionMode.SLICED);
+    }
+
+    /**
+     * Performs a commutative operation on the given array of bitsets, splitting and reducing it as specified by the given mode.<br/><br/>
+     * An {@link AlgebraicOp} is simplified first: repeated bitsets are computed once if it is idempotent, pairs of the same bitset cancel out if it is self-inverse, and the reduction stops as soon as it reaches the annihilator.
+     * With {@link ExecutionMode#SLICED} and {@link ExecutionMode#FORK_JOIN} a {@link BaseOperandOp}, like AND-NOT, combines the bitsets after the first in that mode (OR-ing the subtrahends) and applies the result to the first one once.
+     * Any other operation that is not commutative is never merged from partial results of slices: those modes become {@link ExecutionMode#WORD_RANGE} for a {@link WordwiseOp}, a sequential reduction otherwise
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the operation to perform
+     * @param mode            how to split the input array and reduce the partial results. {@link ExecutionMode#FORK_JOIN} requires the thread pool to be a {@link ForkJoinPool}, {@link ExecutionMode#WORD_RANGE} and {@link ExecutionMode#TILED} require a {@link WordwiseOp}
+     * @return an OpenBitSet, result of the operation
+     * @throws Exception
+     */
+    public MutableBitSet perform(final ImmutableBitSet[] bs, final int finalBitsetSize, final AssociativeOp operation, final ExecutionMode mode) throws Exception {
+        return reduce(bs, finalBitsetSize, operation, mode, null);
+    }
+
+    /**
+     * Performs a commutative operation on the given array of bitsets, stopping early when the given token asks to.<br/>
+     * The tasks check the token every {@link CancellationToken#CHECK_INTERVAL} bitsets, so the call returns promptly after a cancellation or a deadline
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the operation to perform
+     * @param mode            how to split the input array and reduce the partial results, see {@link #perform(ImmutableBitSet[], int, AssociativeOp, ExecutionMode)}
+     * @param token           the token bounding the operation
+     * @return the result of the operation, incomplete if the token stopped it
+     * @throws Exception
+     */
+    public PartialResult<MutableBitSet> perform(final ImmutableBitSet[] bs, final int finalBitsetSize, final AssociativeOp operation, final ExecutionMode mode, final CancellationToken token) throws Exception {
+        if (token == null) {
+            throw new IllegalArgumentException("token cannot be null");
+        }
+        return new PartialResult<MutableBitSet>(reduce(bs, finalBitsetSize, operation, mode, token), !token.isStopped());
+    }
+
+    private MutableBitSet reduce(final ImmutableBitSet[] input, final int finalBitsetSize, final AssociativeOp operation, final ExecutionMode requested, final CancellationToken token) throws Exception {
+        checkBitsets(input);
+        checkMode(operation, requested);
+        ImmutableBitSet[] bs = Algebra.simplify(input, operation, finalBitsetSize);
+        if (onBase(operation, requested, bs)) {
+            BaseOperandOp baseOperandOp = (BaseOperandOp) operation;
+            MutableBitSet combined = reduce(rest(bs), finalBitsetSize, baseOperandOp.combiner(), requested, token);
+            return applyToBase(bs[0], combined, finalBitsetSize, baseOperandOp);
+        }
+        ExecutionMode mode = inOrder(operation, requested);
+        int degree = canMerge(operation, mode) ? associativeParallelism(bs, finalBitsetSize) : SEQUENTIAL;
+        if (degree == SEQUENTIAL) {
+            return new AssociativeOpCallable(bs, 0, bs.length, finalBitsetSize, operation, token, shortCircuit(operation, finalBitsetSize)).call();
+        }
+
+        if (mode == ExecutionMode.FORK_JOIN) {
+            return forkJoin(bs, finalBitsetSize, operation, degree, token);
+        }
+        if (mode == ExecutionMode.WORD_RANGE) {
+            return wordRange(bs, finalBitsetSize, operation, degree, token);
+        }
+        if (mode == ExecutionMode.TILED) {
+            return tiled(bs, finalBitsetSize, operation, token);
+        }
+
+        ShortCircuit shortCircuit = shortCircuit(operation, finalBitsetSize);
+        List<Future<MutableBitSet>> futures = threadPool.invokeAll(associativeOps(bs, finalBitsetSize, operation, degree, token, shortCircuit));
+        MutableBitSet[] accumulated = ArrayUtils.toArray(futures);
+        return merge(accumulated, finalBitsetSize, operation, shortCircuit);
+    }
+
+    /**
+     * Performs a commutative operation on the given array of bitsets without blocking the calling thread
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the operation to perform
+     * @return a future completed, by the thread of the last slice to finish, with the result of the operation
+     */
+    public CompletableFuture<MutableBitSet> performAsync(final ImmutableBitSet[] bs, final int finalBitsetSize, final AssociativeOp operation) {
+        return performAsync(bs, finalBitsetSize, operation, ExecutionMode.SLICED);
+    }
+
+    /**
+     * Performs a commutative operation on the given array of bitsets without blocking the calling thread, splitting and reducing it as specified by the given mode.<br/>
+     * Inputs below the sequential cutover still run on the thread pool, as a single task
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the operation to perform
+     * @param mode            how to split the input array and reduce the partial results, see {@link #perform(ImmutableBitSet[], int, AssociativeOp, ExecutionMode)}
+     * @return a future completed, by the thread of the last slice to finish, with the result of the operation
+     */
+    public CompletableFuture<MutableBitSet> performAsync(final ImmutableBitSet[] bs, final int finalBitsetSize, final AssociativeOp operation, final ExecutionMode mode) {
+        try {
+            checkBitsets(bs);
+            checkMode(operation, mode);
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+        final ImmutableBitSet[] inputs = Algebra.simplify(bs, operation, finalBitsetSize);
+        if (onBase(operation, mode, inputs)) {
+            final BaseOperandOp baseOperandOp = (BaseOperandOp) operation;
+            return performAsync(rest(inputs), finalBitsetSize, baseOperandOp.combiner(), mode).thenApply(new Function<MutableBitSet, MutableBitSet>() {
+                @Override
+                public MutableBitSet apply(final MutableBitSet combined) {
+                    return applyToBase(inputs[0], combined, finalBitsetSize, baseOperandOp);
+                }
+            });
+        }
+        ExecutionMode ordered = inOrder(operation, mode);
+        int degree = canMerge(operation, ordered) ? associativeParallelism(inputs, finalBitsetSize) : SEQUENTIAL;
+        if (degree == SEQUENTIAL) {
+            return single(new AssociativeOpCallable(inputs, 0, inputs.length, finalBitsetSize, operation, null, shortCircuit(operation, finalBitsetSize)));
+        }
+
+        if (ordered == ExecutionMode.FORK_JOIN) {
+            final ForkJoinReduceTask task = forkJoinTask(inputs, finalBitsetSize, operation, degree, null);
+            return single(new Callable<MutableBitSet>() {
+                @Override
+                public MutableBitSet call() {
+                    return task.invoke();
+                }
+            });
+        }
+        if (ordered == ExecutionMode.WORD_RANGE || ordered == ExecutionMode.TILED) {
+            final MutableBitSet result = new MutableBitSet(finalBitsetSize);
+            ShortCircuit shortCircuit = shortCircuit(operation, finalBitsetSize);
+            List<Callable<Void>> ops = ordered == ExecutionMode.TILED ? tiledOps(inputs, result, (WordwiseOp) operation, null, shortCircuit) : wordRangeOps(inputs, result, (WordwiseOp) operation, degree, null, shortCircuit);
+            return new AsyncSlices<Void, MutableBitSet>() {
+                @Override
+                protected MutableBitSet finish(final Object[] results) {
+                    return result;
+                }
+            }.submit(threadPool, ops);
         }
 
-        Collection<Callable<MutableBitSet>> ops = new BitSetSlicer<MutableBitSet>() {
+        final ShortCircuit shortCircuit = shortCircuit(operation, finalBitsetSize);
+        return new AsyncSlices<MutableBitSet, MutableBitSet>() {
             @Override
-            protected Callable<MutableBitSet> newOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex) {
-                return new AssociativeOpCallable(bs, fromIndex, toIndex, finalBitsetSize, operation);
+            protected MutableBitSet finish(final Object[] results) {
+                MutableBitSet[] accumulated = new MutableBitSet[results.length];
+                System.arraycopy(results, 0, accumulated, 0, results.length);
+                return merge(accumulated, finalBitsetSize, operation, shortCircuit);
             }
-        }.sliceBitsets(bs);
+        }.submit(threadPool, associativeOps(inputs, finalBitsetSize, operation, degree, null, shortCircuit));
+    }
 
-        List<Future<MutableBitSet>> futures = threadPool.invokeAll(ops);
-        MutableBitSet[] accumulated = ArrayUtils.toArray(futures);
-        ImmutableBitSet[] immutableAccumulated = immutableCopy(accumulated);
-        return new AssociativeOpCallable(immutableAccumulated, 0, immutableAccumulated.length, finalBitsetSize, operation).call();
+    /**
+     * Counts the bits set in the result of an operation over the given bitsets, without allocating the result: the bitsets are combined a block of words at a time, in parallel over ranges of words as in {@link ExecutionMode#WORD_RANGE}, and each block is counted as soon as it is combined.<br/>
+     * The same as the cardinality of {@link #perform(ImmutableBitSet[], int, AssociativeOp)}
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the operation to compute, word by word
+     * @return the number of bits set in the result of the operation
+     * @throws Exception
+     */
+    public long performCount(final ImmutableBitSet[] bs, final int finalBitsetSize, final WordwiseOp operation) throws Exception {
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        if (operation == null) {
+            throw new IllegalArgumentException("operation cannot be null");
+        }
+        ImmutableBitSet[] simplified = Algebra.simplify(bs, operation, finalBitsetSize);
+        int numWords = BitSetWords.bits2words(finalBitsetSize);
+        int degree = associativeParallelism(simplified, finalBitsetSize);
+        if (degree == SEQUENTIAL) {
+            return new WordRangeCountCallable(simplified, 0, numWords, operation).call().longValue();
+        }
+        int wordsPerPart = wordsPerPart(numWords, degree);
+        List<Callable<Long>> ops = new ArrayList<Callable<Long>>();
+        for (int fromWord = 0; fromWord < numWords; fromWord += wordsPerPart) {
+            ops.add(new WordRangeCountCallable(simplified, fromWord, Math.min(numWords, fromWord + wordsPerPart), operation));
+        }
+        long count = 0L;
+        for (Future<Long> future : threadPool.invokeAll(ops)) {
+            count += future.get().longValue();
+        }
+        return count;
+    }
+
+    /**
+     * Evaluates a boolean expression over bitsets in a single fused pass: the result is computed a block of words at a time across all the leaves, in parallel over ranges of words, without materializing any intermediate bitset
+     *
+     * @param expression      the expression to evaluate
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @return the result of the expression
+     * @throws Exception
+     */
+    public MutableBitSet perform(final Expression expression, final int finalBitsetSize) throws Exception {
+        if (expression == null) {
+            throw new IllegalArgumentException("expression cannot be null");
+        }
+        MutableBitSet result = new MutableBitSet(finalBitsetSize);
+        int degree = expressionParallelism(expression, finalBitsetSize);
+        if (degree == SEQUENTIAL) {
+            evaluate(expressionOps(expression, result, 1, null));
+            return result;
+        }
+        ArrayUtils.await(threadPool.invokeAll(expressionOps(expression, result, degree, null)));
+        return result;
+    }
+
+    /**
+     * Evaluates a boolean expression over bitsets without blocking the calling thread, see {@link #perform(Expression, int)}
+     *
+     * @param expression      the expression to evaluate
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @return a future completed, by the thread of the last range of words to finish, with the result of the expression
+     */
+    public CompletableFuture<MutableBitSet> performAsync(final Expression expression, final int finalBitsetSize) {
+        if (expression == null) {
+            return failed(new IllegalArgumentException("expression cannot be null"));
+        }
+        final MutableBitSet result = new MutableBitSet(finalBitsetSize);
+        int degree = Math.max(1, expressionParallelism(expression, finalBitsetSize));
+        return new AsyncSlices<Void, MutableBitSet>() {
+            @Override
+            protected MutableBitSet finish(final Object[] results) {
+                return result;
+            }
+        }.submit(threadPool, expressionOps(expression, result, degree, null));
+    }
+
+    /**
+     * Plans the evaluation of a boolean expression using the cardinality of its leaves, counting those not given to {@link Expression#leaf(String, ImmutableBitSet, long)}: conjunctions are ordered cheapest first, exclusions are hoisted above the conjunctions they are nested in, and each conjunction picks between folding words and iterating the set bits of its sparsest leaf.<br/>
+     * A plan can be executed many times, see {@link QueryPlan#explain()}
+     *
+     * @param expression      the expression to plan
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @return the plan of the expression
+     */
+    public QueryPlan plan(final Expression expression, final int finalBitsetSize) {
+        if (expression == null) {
+            throw new IllegalArgumentException("expression cannot be null");
+        }
+        return QueryPlanner.plan(expression, finalBitsetSize);
+    }
+
+    /**
+     * Executes a plan like {@link #perform(Expression, int)}, recording the actual figures of the execution in the plan
+     *
+     * @param plan the plan to execute
+     * @return the result of the planned expression
+     * @throws Exception
+     */
+    public MutableBitSet perform(final QueryPlan plan) throws Exception {
+        if (plan == null) {
+            throw new IllegalArgumentException("plan cannot be null");
+        }
+        long start = System.nanoTime();
+        Expression expression = plan.getPlannedExpression();
+        int finalBitsetSize = plan.getFinalBitsetSize();
+        MutableBitSet result = new MutableBitSet(finalBitsetSize);
+        QueryPlan.Execution execution = plan.start();
+        int degree = expressionParallelism(expression, finalBitsetSize);
+        if (degree == SEQUENTIAL) {
+            evaluate(expressionOps(expression, result, 1, execution));
+        } else {
+            ArrayUtils.await(threadPool.invokeAll(expressionOps(expression, result, degree, execution)));
+        }
+        plan.finish(execution, result.cardinality(), System.nanoTime() - start);
+        return result;
     }
 
     /**
@@ -100,19 +431,870 @@ public final class BitsetOperationsExecutor {
      * @throws Exception
      */
     public <T> T[] perform(final ImmutableBitSet[] bs, final ImmutableBitSet toCompare, final int finalBitsetSize, final ComparisonOp<T> operation) throws Exception {
-        if (bs.length <= minArraySize) {
-            return new ComparisonOpCallable<T>(bs, 0, bs.length, finalBitsetSize, toCompare, operation).call();
+        return perform(bs, toCompare, finalBitsetSize, operation, ExecutionMode.SLICED);
+    }
+
+    /**
+     * Performs a comparative operation on the given array of bitsets, splitting it as specified by the given mode
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param toCompare       the bitset to compare to the array of bitsets
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the operation to compute
+     * @param mode            how to split the input array, either {@link ExecutionMode#SLICED} or {@link ExecutionMode#TILED}. The latter requires a {@link WordwiseComparisonOp}
+     * @param <T>             the return type
+     * @return an array of objects (whose type is defined by the operation). The array has the same size of the input array of bitsets and order is preserved so the result of the operation performed at bs[N] is at position N in the returned array
+     * @throws Exception
+     */
+    public <T> T[] perform(final ImmutableBitSet[] bs, final ImmutableBitSet toCompare, final int finalBitsetSize, final ComparisonOp<T> operation, final ExecutionMode mode) throws Exception {
+        return compare(bs, toCompare, finalBitsetSize, operation, mode, null);
+    }
+
+    /**
+     * Performs a comparative operation on the given array of bitsets, stopping early when the given token asks to.<br/>
+     * The tasks check the token every {@link CancellationToken#CHECK_INTERVAL} bitsets (or tiles), so the call returns promptly after a cancellation or a deadline
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param toCompare       the bitset to compare to the array of bitsets
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the operation to compute
+     * @param mode            how to split the input array, see {@link #perform(ImmutableBitSet[], ImmutableBitSet, int, ComparisonOp, ExecutionMode)}
+     * @param token           the token bounding the operation
+     * @param <T>             the return type
+     * @return the same array {@link #perform(ImmutableBitSet[], ImmutableBitSet, int, ComparisonOp)} would return; if the token stopped the operation, incomplete with null elements for the bitsets not compared, or null if none was
+     * @throws Exception
+     */
+    public <T> PartialResult<T[]> perform(final ImmutableBitSet[] bs, final ImmutableBitSet toCompare, final int finalBitsetSize, final ComparisonOp<T> operation, final ExecutionMode mode, final CancellationToken token) throws Exception {
+        if (token == null) {
+            throw new IllegalArgumentException("token cannot be null");
+        }
+        T[] result = compare(bs, toCompare, finalBitsetSize, operation, mode, token);
+        boolean complete = !token.isStopped();
+        return new PartialResult<T[]>(!complete && ArrayUtils.allNull(result) ? null : result, complete);
+    }
+
+    private <T> T[] compare(final ImmutableBitSet[] bs, final ImmutableBitSet toCompare, final int finalBitsetSize, final ComparisonOp<T> operation, final ExecutionMode mode, final CancellationToken token) throws Exception {
+        checkBitsets(bs);
+        checkMode(operation, mode);
+        int degree = comparisonParallelism(bs, toCompare, finalBitsetSize);
+        if (degree == SEQUENTIAL) {
+            return new ComparisonOpCallable<T>(bs, 0, bs.length, finalBitsetSize, toCompare, operation, token).call();
+        }
+        List<Callable<T[]>> ops = comparisonOps(bs, toCompare, finalBitsetSize, operation, mode, degree, token);
+
+        return ArrayUtils.flatten(threadPool.invokeAll(ops), bs.length);
+    }
+
+    /**
+     * Performs a comparative operation on the given array of bitsets writing the results into the given array, without boxing: each slice writes its own range of the array
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param toCompare       the bitset to compare to the array of bitsets
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the operation to compute
+     * @param result          the array receiving the result of the operation performed at bs[N] at position N, at least as long as the input array
+     * @return the given result array
+     * @throws Exception
+     */
+    public long[] perform(final ImmutableBitSet[] bs, final ImmutableBitSet toCompare, final int finalBitsetSize, final LongComparisonOp operation, final long[] result) throws Exception {
+        checkResult(operation, result == null ? -1 : result.length, bs);
+        compareInto(new PrimitiveComparisonCallable.Longs(bs, 0, bs.length, finalBitsetSize, toCompare, operation, result, null));
+        return result;
+    }
+
+    /**
+     * Performs a comparative operation on the given array of bitsets writing the results into the given array, without boxing: each slice writes its own range of the array
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param toCompare       the bitset to compare to the array of bitsets
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the operation to compute
+     * @param result          the array receiving the result of the operation performed at bs[N] at position N, at least as long as the input array
+     * @return the given result array
+     * @throws Exception
+     */
+    public int[] perform(final ImmutableBitSet[] bs, final ImmutableBitSet toCompare, final int finalBitsetSize, final IntComparisonOp operation, final int[] result) throws Exception {
+        checkResult(operation, result == null ? -1 : result.length, bs);
+        compareInto(new PrimitiveComparisonCallable.Ints(bs, 0, bs.length, finalBitsetSize, toCompare, operation, result, null));
+        return result;
+    }
+
+    /**
+     * Performs a comparative operation on the given array of bitsets writing the results into the given array, without boxing: each slice writes its own range of the array
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param toCompare       the bitset to compare to the array of bitsets
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the operation to compute
+     * @param result          the array receiving the result of the operation performed at bs[N] at position N, at least as long as the input array
+     * @return the given result array
+     * @throws Exception
+     */
+    public double[] perform(final ImmutableBitSet[] bs, final ImmutableBitSet toCompare, final int finalBitsetSize, final DoubleComparisonOp operation, final double[] result) throws Exception {
+        checkResult(operation, result == null ? -1 : result.length, bs);
+        compareInto(new PrimitiveComparisonCallable.Doubles(bs, 0, bs.length, finalBitsetSize, toCompare, operation, result, null));
+        return result;
+    }
+
+    /**
+     * Finds the K bitsets with the highest score against the query, for example the K with the largest overlap using {@link org.apache.lucene.contrib.bitset.ops.IntersectionCount}.<br/>
+     * Each slice keeps its K best in a bounded heap, and the heaps are merged at the end, without materializing the scores of all the bitsets
+     *
+     * @param bs              the bitsets to score
+     * @param query           the bitset to score them against
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param k               the number of bitsets to find
+     * @param scorer          the score of a bitset against the query
+     * @return the K best bitsets, or all of them if there are fewer
+     * @throws Exception
+     */
+    public TopK topK(final ImmutableBitSet[] bs, final ImmutableBitSet query, final int finalBitsetSize, final int k, final LongComparisonOp scorer) throws Exception {
+        return topK(bs, query, finalBitsetSize, k, scorer, null);
+    }
+
+    /**
+     * Finds the K bitsets with the highest score against the query, see {@link #topK(ImmutableBitSet[], ImmutableBitSet, int, int, LongComparisonOp)}, skipping the bitsets that cannot qualify: once a slice holds K bitsets, a bitset whose bound is not above the K-th score of the slice is not scored
+     *
+     * @param bs              the bitsets to score
+     * @param query           the bitset to score them against
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param k               the number of bitsets to find
+     * @param scorer          the score of a bitset against the query
+     * @param bounds          an upper bound of the score of each bitset, at the same index, for example their precomputed cardinalities for an intersection count; null to score every bitset
+     * @return the K best bitsets, or all of them if there are fewer
+     * @throws Exception
+     */
+    public TopK topK(final ImmutableBitSet[] bs, final ImmutableBitSet query, final int finalBitsetSize, final int k, final LongComparisonOp scorer, final long[] bounds) throws Exception {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1, got " + k);
+        }
+        checkScored(bs, scorer, bounds == null ? Integer.MAX_VALUE : bounds.length);
+        int degree = comparisonParallelism(bs, query, finalBitsetSize);
+        if (degree == SEQUENTIAL) {
+            return new TopKCallable(bs, 0, bs.length, finalBitsetSize, query, k, scorer, bounds).call().toTopK();
+        }
+        List<Callable<TopKHeap>> ops = new BitSetSlicer<TopKHeap>(slicingPolicy, degree) {
+            @Override
+            protected Callable<TopKHeap> newOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex) {
+                return new TopKCallable(bs, fromIndex, toIndex, finalBitsetSize, query, k, scorer, bounds);
+            }
+        }.sliceBitsets(bs);
+
+        TopKHeap merged = new TopKHeap(Math.min(k, bs.length));
+        for (Future<TopKHeap> future : threadPool.invokeAll(ops)) {
+            merged.offerAll(future.get());
+        }
+        return merged.toTopK();
+    }
+
+    /**
+     * Finds all the bitsets whose score against the query reaches the threshold, for example an intersection count of at least some number of bits.<br/>
+     * Only the matches are stored. The score of an {@link IntersectionCount} is counted a block of words at a time, and a bitset is given up as soon as the rest of the query is too small for it to reach the threshold
+     *
+     * @param bs              the bitsets to score
+     * @param query           the bitset to score them against
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param threshold       the lowest score of a match
+     * @param scorer          the score of a bitset against the query
+     * @param withScores      true to keep the scores of the matches
+     * @return the matches, by increasing index
+     * @throws Exception
+     */
+    public Matches<long[]> filter(final ImmutableBitSet[] bs, final ImmutableBitSet query, final int finalBitsetSize, final long threshold, final LongComparisonOp scorer, final boolean withScores) throws Exception {
+        return filter(bs, query, finalBitsetSize, threshold, scorer, withScores, null);
+    }
+
+    /**
+     * Finds all the bitsets whose score against the query reaches the threshold, see {@link #filter(ImmutableBitSet[], ImmutableBitSet, int, long, LongComparisonOp, boolean)}, without scoring the bitsets whose bound is below the threshold
+     *
+     * @param bs              the bitsets to score
+     * @param query           the bitset to score them against
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param threshold       the lowest score of a match
+     * @param scorer          the score of a bitset against the query
+     * @param withScores      true to keep the scores of the matches
+     * @param bounds          an upper bound of the score of each bitset, at the same index, for example their precomputed cardinalities for an intersection count; null to score every bitset
+     * @return the matches, by increasing index
+     * @throws Exception
+     */
+    public Matches<long[]> filter(final ImmutableBitSet[] bs, final ImmutableBitSet query, final int finalBitsetSize, final long threshold, final LongComparisonOp scorer, final boolean withScores, final long[] bounds) throws Exception {
+        checkScored(bs, scorer, bounds == null ? Integer.MAX_VALUE : bounds.length);
+        long[] suffixCounts = scorer instanceof IntersectionCount ? FilterCallable.suffixCounts(query) : null;
+        return filter(new FilterCallable.Longs(bs, 0, bs.length, finalBitsetSize, query, threshold, scorer, withScores, bounds, suffixCounts));
+    }
+
+    /**
+     * Finds all the bitsets whose score against the query reaches the threshold, for example a similarity of at least some value.<br/>
+     * Named apart from {@link #filter(ImmutableBitSet[], ImmutableBitSet, int, long, LongComparisonOp, boolean)} so that a lambda scorer with a whole number threshold is not ambiguous
+     *
+     * @param bs              the bitsets to score
+     * @param query           the bitset to score them against
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param threshold       the lowest score of a match
+     * @param scorer          the score of a bitset against the query
+     * @param withScores      true to keep the scores of the matches
+     * @return the matches, by increasing index
+     * @throws Exception
+     */
+    public Matches<double[]> filterSimilar(final ImmutableBitSet[] bs, final ImmutableBitSet query, final int finalBitsetSize, final double threshold, final DoubleComparisonOp scorer, final boolean withScores) throws Exception {
+        checkScored(bs, scorer, Integer.MAX_VALUE);
+        return filter(new FilterCallable.Doubles(bs, 0, bs.length, finalBitsetSize, query, threshold, scorer, withScores, null));
+    }
+
+    /**
+     * Finds all the bitsets whose similarity with the query reaches the threshold, see {@link #filterSimilar(ImmutableBitSet[], ImmutableBitSet, int, double, DoubleComparisonOp, boolean)}, without scoring the bitsets whose cardinality rules them out: those that would stay below the threshold even sharing all the bits of the smaller of them and the query, for example when min / max of the two cardinalities is below the threshold of a {@link org.apache.lucene.contrib.bitset.ops.Jaccard} index
+     *
+     * @param bs              the bitsets to score
+     * @param query           the bitset to score them against
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param threshold       the lowest similarity of a match
+     * @param scorer          the similarity of a bitset with the query, growing with the number of bits they share
+     * @param withScores      true to keep the scores of the matches
+     * @param cardinalities   the precomputed cardinality of each bitset, at the same index
+     * @return the matches, by increasing index
+     * @throws Exception
+     */
+    public Matches<double[]> filterSimilar(final ImmutableBitSet[] bs, final ImmutableBitSet query, final int finalBitsetSize, final double threshold, final OverlapSimilarity scorer, final boolean withScores, final long[] cardinalities) throws Exception {
+        if (cardinalities == null) {
+            throw new IllegalArgumentException("cardinalities cannot be null");
+        }
+        checkScored(bs, scorer, cardinalities.length);
+        return filter(new FilterCallable.Doubles(bs, 0, bs.length, finalBitsetSize, query, threshold, scorer, withScores, cardinalities));
+    }
+
+    private <S> Matches<S> filter(final FilterCallable<S> all) throws Exception {
+        int degree = comparisonParallelism(all.bs, all.query, all.finalBitsetSize);
+        if (degree == SEQUENTIAL) {
+            return all.call();
+        }
+        List<Callable<Matches<S>>> ops = new BitSetSlicer<Matches<S>>(slicingPolicy, degree) {
+            @Override
+            protected Callable<Matches<S>> newOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex) {
+                return all.slice(fromIndex, toIndex);
+            }
+        }.sliceBitsets(all.bs);
+
+        List<Matches<S>> slices = new ArrayList<Matches<S>>(ops.size());
+        for (Future<Matches<S>> future : threadPool.invokeAll(ops)) {
+            slices.add(future.get());
+        }
+        return Matches.concat(slices);
+    }
+
+    private static void checkScored(final ImmutableBitSet[] bs, final Object scorer, final int boundsLength) {
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        if (scorer == null) {
+            throw new IllegalArgumentException("scorer cannot be null");
+        }
+        if (boundsLength < bs.length) {
+            throw new IllegalArgumentException("bounds must hold at least " + bs.length + " elements, got " + boundsLength);
+        }
+    }
+
+    /**
+     * Computes several comparisons of the given array of bitsets at once, scanning the words of each bitset and of the bitset to compare only once whatever the number of metrics
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param toCompare       the bitset to compare to the array of bitsets
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the metrics to compute
+     * @return one array per metric, holding the result for bs[N] at position N
+     * @throws Exception
+     */
+    public ComparisonMetrics perform(final ImmutableBitSet[] bs, final ImmutableBitSet toCompare, final int finalBitsetSize, final CompositeComparisonOp operation) throws Exception {
+        if (operation == null) {
+            throw new IllegalArgumentException("operation cannot be null");
+        }
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        WordwiseComparisonOp<?>[] counts = operation.getCounts();
+        OverlapSimilarity[] similarities = operation.getSimilarities();
+        long[][] countResults = new long[counts.length][bs.length];
+        double[][] similarityResults = new double[similarities.length][bs.length];
+        final CompositeComparisonCallable all = new CompositeComparisonCallable(bs, 0, bs.length, finalBitsetSize, toCompare, toCompare.cardinality(), counts, similarities, countResults, similarityResults);
+
+        int degree = comparisonParallelism(bs, toCompare, finalBitsetSize);
+        if (degree == SEQUENTIAL) {
+            all.call();
+        } else {
+            ArrayUtils.await(threadPool.invokeAll(new BitSetSlicer<Void>(slicingPolicy, degree) {
+                @Override
+                protected Callable<Void> newOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex) {
+                    return all.slice(fromIndex, toIndex);
+                }
+            }.sliceBitsets(bs)));
+        }
+        return new ComparisonMetrics(countResults, similarityResults);
+    }
+
+    /**
+     * Compares the given array of bitsets with many bitsets at once, for example to score a batch of queries against a corpus: the corpus is read once, a block of words at a time, each block compared with the same block of all the queries while it is in the cache
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param queries         the bitsets to compare to the array of bitsets
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the comparison to compute, see {@link WordwiseComparisonOp#count(long, long)}
+     * @return the dense matrix of the counts summed over all the words, the count of bs[N] against queries[Q] at [Q][N]
+     * @throws Exception
+     */
+    public long[][] perform(final ImmutableBitSet[] bs, final ImmutableBitSet[] queries, final int finalBitsetSize, final WordwiseComparisonOp<?> operation) throws Exception {
+        if (operation == null) {
+            throw new IllegalArgumentException("operation cannot be null");
+        }
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        if (queries == null || queries.length == 0) {
+            throw new IllegalArgumentException("queries cannot be null or empty");
+        }
+        long[][] counts = new long[queries.length][bs.length];
+        // the block of every query, plus the block of the target streaming through them
+        int wordsPerBlock = tiling.wordsPerBlock(queries.length + 1);
+        final MultiQueryComparisonCallable all = new MultiQueryComparisonCallable(bs, 0, bs.length, finalBitsetSize, queries, wordsPerBlock, operation, counts);
+
+        int degree = comparisonParallelism(bs, queries, finalBitsetSize);
+        if (degree == SEQUENTIAL) {
+            all.call();
+        } else {
+            ArrayUtils.await(threadPool.invokeAll(new BitSetSlicer<Void>(slicingPolicy, degree) {
+                @Override
+                protected Callable<Void> newOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex) {
+                    return all.slice(fromIndex, toIndex);
+                }
+            }.sliceBitsets(bs)));
+        }
+        return counts;
+    }
+
+    /**
+     * Finds every pair of bitsets of the given array whose {@link org.apache.lucene.contrib.bitset.ops.Jaccard} index reaches the threshold, handing each pair to the listener as soon as it is found.<br/>
+     * The bitsets are sorted by cardinality and the triangle of pairs is split in blocks of rows, each task taking a block and its mirror so that tasks get about the same work. Most pairs are never counted: the cardinalities bound the candidates of a row, and a pair whose prefixes do not intersect, or whose intersection falls too short while being counted, is given up. Empty bitsets are never paired
+     *
+     * @param bs        the bitsets to join with themselves
+     * @param threshold the lowest Jaccard index of a pair, in (0, 1]
+     * @param listener  the receiver of the pairs, called from the threads of the executor
+     * @throws Exception
+     */
+    public void similarityJoin(final ImmutableBitSet[] bs, final double threshold, final PairListener listener) throws Exception {
+        if (bs == null) {
+            throw new IllegalArgumentException("bit sets cannot be null");
+        }
+        if (!(threshold > 0.0d && threshold <= 1.0d)) {
+            throw new IllegalArgumentException("threshold must be in (0, 1], got " + threshold);
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+        List<Callable<Void>> tasks = SimilarityJoinCallable.tasks(new SimilarityJoinCallable.Index(bs, threshold), listener);
+        // every bitset is a candidate to be compared with every other one
+        callAll(tasks, comparisonParallelism(bs, bs, 0));
+    }
+
+    /**
+     * Calls the given tasks in the calling thread if the degree is {@link #SEQUENTIAL} or 1, otherwise in at most degree tasks of the pool, each calling every degree-th of the given tasks
+     */
+    private void callAll(final List<Callable<Void>> tasks, final int degree) throws Exception {
+        if (degree == SEQUENTIAL || degree == 1) {
+            for (Callable<Void> task : tasks) {
+                task.call();
+            }
+            return;
+        }
+        if (tasks.size() <= degree) {
+            ArrayUtils.await(threadPool.invokeAll(tasks));
+            return;
+        }
+        List<Callable<Void>> groups = new ArrayList<Callable<Void>>(degree);
+        for (int i = 0; i < degree; i++) {
+            final int first = i;
+            groups.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int task = first; task < tasks.size(); task += degree) {
+                        tasks.get(task).call();
+                    }
+                    return null;
+                }
+            });
+        }
+        ArrayUtils.await(threadPool.invokeAll(groups));
+    }
+
+    /**
+     * Counts the intersection of every pair of the given bitsets, see {@link #coOccurrence(ImmutableBitSet[], ImmutableBitSet, long[])}
+     *
+     * @param bs    the bitsets to count the co-occurrences of
+     * @param query the bitset restricting the counts to its bits, null to count all the bits
+     * @return the K x K row major matrix of the counts
+     * @throws Exception
+     */
+    public long[] coOccurrence(final ImmutableBitSet[] bs, final ImmutableBitSet query) throws Exception {
+        checkMatrix(bs, Integer.MAX_VALUE);
+        return coOccurrence(bs, query, new long[bs.length * bs.length]);
+    }
+
+    /**
+     * Counts the intersection of every pair of the given bitsets, for example co-occurrences of facet values: the count of bs[A] and bs[B] (and of the query, if any) is written at [A * K + B] and [B * K + A] of the given row major matrix, the cardinality of bs[A] (within the query) at [A * K + A].<br/>
+     * Only the upper triangle is counted, by tiles of {@link Tiling#getBitsetsPerTile()} rows and columns computed in parallel, a block of words at a time
+     *
+     * @param bs     the bitsets to count the co-occurrences of
+     * @param query  the bitset restricting the counts to its bits, null to count all the bits
+     * @param matrix the K x K row major matrix receiving the counts
+     * @return the given matrix
+     * @throws Exception
+     */
+    public long[] coOccurrence(final ImmutableBitSet[] bs, final ImmutableBitSet query, final long[] matrix) throws Exception {
+        checkMatrix(bs, matrix == null ? -1 : matrix.length);
+        coOccurrence(bs, CoOccurrenceCallable.tiles(bs, query, tiling, matrix, null));
+        return matrix;
+    }
+
+    /**
+     * Counts the intersection of every pair of the given bitsets into a matrix of ints, see {@link #coOccurrence(ImmutableBitSet[], ImmutableBitSet, long[])}
+     *
+     * @param bs     the bitsets to count the co-occurrences of
+     * @param query  the bitset restricting the counts to its bits, null to count all the bits
+     * @param matrix the K x K row major matrix receiving the counts
+     * @return the given matrix
+     * @throws Exception
+     */
+    public int[] coOccurrence(final ImmutableBitSet[] bs, final ImmutableBitSet query, final int[] matrix) throws Exception {
+        checkMatrix(bs, matrix == null ? -1 : matrix.length);
+        coOccurrence(bs, CoOccurrenceCallable.tiles(bs, query, tiling, null, matrix));
+        return matrix;
+    }
+
+    private void coOccurrence(final ImmutableBitSet[] bs, final List<Callable<Void>> tiles) throws Exception {
+        // every bitset is counted against every other one
+        callAll(tiles, comparisonParallelism(bs, bs, 0));
+    }
+
+    private static void checkMatrix(final ImmutableBitSet[] bs, final int matrixLength) {
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        if ((long) bs.length * bs.length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many bit sets for a matrix, got " + bs.length);
+        }
+        if (matrixLength < 0) {
+            throw new IllegalArgumentException("matrix cannot be null");
+        }
+        if (matrixLength < bs.length * bs.length) {
+            throw new IllegalArgumentException("matrix must hold at least " + bs.length + " x " + bs.length + " elements, got " + matrixLength);
+        }
+    }
+
+    /**
+     * Counts, for every bit position, how many of the given bitsets have it set, for example the document frequency of every document over a set of terms.<br/>
+     * Counting is done on bit-sliced counters, 64 positions at a time, in parallel over ranges of words
+     *
+     * @param bs              the bitsets to count
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @return the number of bitsets having each bit set, indexed by bit position
+     * @throws Exception
+     */
+    public int[] countPerBit(final ImmutableBitSet[] bs, final int finalBitsetSize) throws Exception {
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        int[] counts = new int[finalBitsetSize];
+        int numWords = BitSetWords.bits2words(finalBitsetSize);
+        int degree = associativeParallelism(bs, finalBitsetSize);
+        if (degree == SEQUENTIAL) {
+            new BitCountCallable(bs, counts, 0, numWords).call();
+            return counts;
+        }
+        int wordsPerPart = wordsPerPart(numWords, degree);
+        List<Callable<Void>> ops = new ArrayList<Callable<Void>>();
+        for (int fromWord = 0; fromWord < numWords; fromWord += wordsPerPart) {
+            ops.add(new BitCountCallable(bs, counts, fromWord, Math.min(numWords, fromWord + wordsPerPart)));
+        }
+        ArrayUtils.await(threadPool.invokeAll(ops));
+        return counts;
+    }
+
+    /**
+     * Computes the bitset of the positions set in at least k of the given bitsets, for example the documents matching at least k of n filters.<br/>
+     * Positions are counted on bit-sliced saturating counters wide enough for k, 64 positions at a time, in parallel over ranges of words
+     *
+     * @param bs              the bitsets to combine
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param k               the number of bitsets a position must be set in, at least 1
+     * @return the positions set in at least k bitsets, empty if k is greater than the number of bitsets
+     * @throws Exception
+     */
+    public MutableBitSet atLeast(final ImmutableBitSet[] bs, final int finalBitsetSize, final int k) throws Exception {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1, got " + k);
+        }
+        return threshold(bs, finalBitsetSize, k, false);
+    }
+
+    /**
+     * Computes the bitset of the positions set in more than half of the given bitsets, see {@link #atLeast(ImmutableBitSet[], int, int)}
+     *
+     * @param bs              the bitsets to combine
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @return the positions set in at least n / 2 + 1 of the n bitsets
+     * @throws Exception
+     */
+    public MutableBitSet majority(final ImmutableBitSet[] bs, final int finalBitsetSize) throws Exception {
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        return atLeast(bs, finalBitsetSize, bs.length / 2 + 1);
+    }
+
+    /**
+     * Computes the bitset of the positions set in exactly k of the given bitsets, see {@link #atLeast(ImmutableBitSet[], int, int)}
+     *
+     * @param bs              the bitsets to combine
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param k               the number of bitsets a position must be set in, 0 for the positions set in none
+     * @return the positions set in exactly k bitsets
+     * @throws Exception
+     */
+    public MutableBitSet exactly(final ImmutableBitSet[] bs, final int finalBitsetSize, final int k) throws Exception {
+        if (k < 0) {
+            throw new IllegalArgumentException("k cannot be negative, got " + k);
+        }
+        return threshold(bs, finalBitsetSize, k, true);
+    }
+
+    private MutableBitSet threshold(final ImmutableBitSet[] bs, final int finalBitsetSize, final int k, final boolean exactly) throws Exception {
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        MutableBitSet result = new MutableBitSet(finalBitsetSize);
+        if (k > bs.length) {
+            return result;
+        }
+        long[] words = BitSetWords.words(result);
+        int numWords = BitSetWords.numWords(result);
+        int degree = associativeParallelism(bs, finalBitsetSize);
+        if (degree == SEQUENTIAL) {
+            new ThresholdCallable(bs, words, 0, numWords, k, exactly).call();
+        } else {
+            int wordsPerPart = wordsPerPart(numWords, degree);
+            List<Callable<Void>> ops = new ArrayList<Callable<Void>>();
+            for (int fromWord = 0; fromWord < numWords; fromWord += wordsPerPart) {
+                ops.add(new ThresholdCallable(bs, words, fromWord, Math.min(numWords, fromWord + wordsPerPart), k, exactly));
+            }
+            ArrayUtils.await(threadPool.invokeAll(ops));
+        }
+        if (numWords > 0 && (finalBitsetSize & 63) != 0) {
+            // exactly 0 sets the positions past the final bitset size too
+            words[numWords - 1] &= -1L >>> (64 - (finalBitsetSize & 63));
+        }
+        return result;
+    }
+
+    private void compareInto(final PrimitiveComparisonCallable all) throws Exception {
+        int degree = comparisonParallelism(all.bs, all.toCompare, all.finalBitsetSize);
+        if (degree == SEQUENTIAL) {
+            all.call();
+            return;
+        }
+        ArrayUtils.await(threadPool.invokeAll(new BitSetSlicer<Void>(slicingPolicy, degree) {
+            @Override
+            protected Callable<Void> newOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex) {
+                return all.slice(fromIndex, toIndex);
+            }
+        }.sliceBitsets(all.bs)));
+    }
+
+    private static void checkResult(final Object operation, final int resultLength, final ImmutableBitSet[] bs) {
+        if (operation == null) {
+            throw new IllegalArgumentException("operation cannot be null");
+        }
+        if (resultLength < 0) {
+            throw new IllegalArgumentException("result cannot be null");
+        }
+        if (bs != null && resultLength < bs.length) {
+            throw new IllegalArgumentException("result must hold at least " + bs.length + " elements, got " + resultLength);
+        }
+    }
+
+    /**
+     * Performs a comparative operation on the given array of bitsets without blocking the calling thread
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param toCompare       the bitset to compare to the array of bitsets
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the operation to compute
+     * @param <T>             the return type
+     * @return a future completed, by the thread of the last slice to finish, with the same array {@link #perform(ImmutableBitSet[], ImmutableBitSet, int, ComparisonOp)} would return
+     */
+    public <T> CompletableFuture<T[]> performAsync(final ImmutableBitSet[] bs, final ImmutableBitSet toCompare, final int finalBitsetSize, final ComparisonOp<T> operation) {
+        return performAsync(bs, toCompare, finalBitsetSize, operation, ExecutionMode.SLICED);
+    }
+
+    /**
+     * Performs a comparative operation on the given array of bitsets without blocking the calling thread, splitting it as specified by the given mode
+     *
+     * @param bs              the bitsets on to compute the operation
+     * @param toCompare       the bitset to compare to the array of bitsets
+     * @param finalBitsetSize the final bitset size (tipically IndexReader.numDocs())
+     * @param operation       the operation to compute
+     * @param mode            how to split the input array, see {@link #perform(ImmutableBitSet[], ImmutableBitSet, int, ComparisonOp, ExecutionMode)}
+     * @param <T>             the return type
+     * @return a future completed, by the thread of the last slice to finish, with the same array {@link #perform(ImmutableBitSet[], ImmutableBitSet, int, ComparisonOp)} would return
+     */
+    public <T> CompletableFuture<T[]> performAsync(final ImmutableBitSet[] bs, final ImmutableBitSet toCompare, final int finalBitsetSize, final ComparisonOp<T> operation, final ExecutionMode mode) {
+        try {
+            checkBitsets(bs);
+            checkMode(operation, mode);
+        } catch (RuntimeException e) {
+            return failed(e);
         }
-        Collection<Callable<T[]>> ops = new BitSetSlicer<T[]>() {
+        int degree = comparisonParallelism(bs, toCompare, finalBitsetSize);
+        if (degree == SEQUENTIAL) {
+            return single(new ComparisonOpCallable<T>(bs, 0, bs.length, finalBitsetSize, toCompare, operation));
+        }
+        List<Callable<T[]>> ops = comparisonOps(bs, toCompare, finalBitsetSize, operation, mode, degree, null);
+        return new AsyncSlices<T[], T[]>() {
+            @Override
+            @SuppressWarnings({"unchecked"})
+            protected T[] finish(final Object[] results) {
+                Object[][] partitionResults = new Object[results.length][];
+                System.arraycopy(results, 0, partitionResults, 0, results.length);
+                return (T[]) ArrayUtils.flatten(partitionResults);
+            }
+        }.submit(threadPool, ops);
+    }
+
+    private List<Callable<MutableBitSet>> associativeOps(final ImmutableBitSet[] bs, final int finalBitsetSize, final AssociativeOp operation, final int degree, final CancellationToken token, final ShortCircuit shortCircuit) {
+        return new BitSetSlicer<MutableBitSet>(slicingPolicy, degree) {
+            @Override
+            protected Callable<MutableBitSet> newOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex) {
+                return new AssociativeOpCallable(bs, fromIndex, toIndex, finalBitsetSize, operation, token, shortCircuit);
+            }
+        }.sliceBitsets(bs);
+    }
+
+    private <T> List<Callable<T[]>> comparisonOps(final ImmutableBitSet[] bs, final ImmutableBitSet toCompare, final int finalBitsetSize, final ComparisonOp<T> operation, final ExecutionMode mode, final int degree, final CancellationToken token) {
+        return new BitSetSlicer<T[]>(slicingPolicy, degree) {
             @Override
             protected Callable<T[]> newOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex) {
-                return new ComparisonOpCallable<T>(bs, fromIndex, toIndex, finalBitsetSize, toCompare, operation);
+                if (mode == ExecutionMode.TILED) {
+                    return new TiledComparisonCallable<T>(bs, fromIndex, toIndex, finalBitsetSize, toCompare, tiling, (WordwiseComparisonOp<T>) operation, token);
+                }
+                return new ComparisonOpCallable<T>(bs, fromIndex, toIndex, finalBitsetSize, toCompare, operation, token);
             }
         }.sliceBitsets(bs);
+    }
+
+    private static MutableBitSet merge(final MutableBitSet[] accumulated, final int finalBitsetSize, final AssociativeOp operation, final ShortCircuit shortCircuit) {
+        if (shortCircuit != null && shortCircuit.isAnnihilated()) {
+            // some slices may have stopped before the end of their range, but the result is known anyway
+            return shortCircuit.result();
+        }
+        ImmutableBitSet[] immutableAccumulated = immutableCopy(accumulated);
+        return new AssociativeOpCallable(immutableAccumulated, 0, immutableAccumulated.length, finalBitsetSize, operation, null, shortCircuit).call();
+    }
+
+    /**
+     * @return a ShortCircuit shared by the tasks of an operation with an annihilator, which can stop as soon as any of them reaches it, null for the other operations
+     */
+    private static ShortCircuit shortCircuit(final AssociativeOp operation, final int finalBitsetSize) {
+        Element annihilator = Algebra.annihilator(operation);
+        return annihilator == Element.NONE ? null : new ShortCircuit(annihilator, finalBitsetSize);
+    }
+
+    /**
+     * Partial results of slices are merged with the operation itself, which is wrong when it is not commutative: such an operation is computed word by word, when it can be, which keeps the order of the input array
+     */
+    private static ExecutionMode inOrder(final AssociativeOp operation, final ExecutionMode mode) {
+        if (!Algebra.isCommutative(operation) && operation instanceof WordwiseOp && (mode == ExecutionMode.SLICED || mode == ExecutionMode.FORK_JOIN)) {
+            return ExecutionMode.WORD_RANGE;
+        }
+        return mode;
+    }
+
+    /**
+     * An operation on a base, like AND-NOT, is split by bitsets combining the bitsets after the first with its commutative combiner, OR for AND-NOT, and applying the result to the base once
+     */
+    private static boolean onBase(final AssociativeOp operation, final ExecutionMode mode, final ImmutableBitSet[] bs) {
+        return operation instanceof BaseOperandOp && (mode == ExecutionMode.SLICED || mode == ExecutionMode.FORK_JOIN) && bs.length > 1;
+    }
+
+    private static ImmutableBitSet[] rest(final ImmutableBitSet[] bs) {
+        return Arrays.copyOfRange(bs, 1, bs.length);
+    }
+
+    private static MutableBitSet applyToBase(final ImmutableBitSet base, final MutableBitSet combined, final int finalBitsetSize, final AssociativeOp operation) {
+        MutableBitSet result = new MutableBitSet(finalBitsetSize);
+        result.or(base);
+        operation.compute(result, combined.immutableCopy());
+        return result;
+    }
+
+    private static boolean canMerge(final AssociativeOp operation, final ExecutionMode mode) {
+        return Algebra.isCommutative(operation) || mode == ExecutionMode.WORD_RANGE || mode == ExecutionMode.TILED;
+    }
 
-        List<Future<T[]>> futures = threadPool.invokeAll(ops);
-        T[][] partitionResults = ArrayUtils.toArray(futures);
-        return ArrayUtils.flatten(partitionResults);
+    private <R> CompletableFuture<R> single(final Callable<R> op) {
+        return new AsyncSlices<R, R>() {
+            @Override
+            @SuppressWarnings({"unchecked"})
+            protected R finish(final Object[] results) {
+                return (R) results[0];
+            }
+        }.submit(threadPool, Collections.singletonList(op));
+    }
+
+    private static <R> CompletableFuture<R> failed(final Throwable t) {
+        CompletableFuture<R> future = new CompletableFuture<R>();
+        future.completeExceptionally(t);
+        return future;
+    }
+
+    private int associativeParallelism(final ImmutableBitSet[] bs, final int finalBitsetSize) {
+        return associativeParallelism(bs.length, finalBitsetSize);
+    }
+
+    private int expressionParallelism(final Expression expression, final int finalBitsetSize) {
+        return associativeParallelism(expression.leafCount(), finalBitsetSize);
+    }
+
+    private int associativeParallelism(final int numberOfBitsets, final int finalBitsetSize) {
+        if (costModel == null) {
+            return numberOfBitsets <= minArraySize ? SEQUENTIAL : parallelism;
+        }
+        int degree = costModel.associativeParallelism((long) numberOfBitsets * BitSetWords.bits2words(finalBitsetSize), parallelism);
+        return degree == 1 ? SEQUENTIAL : degree;
+    }
+
+    private int comparisonParallelism(final ImmutableBitSet[] bs, final ImmutableBitSet toCompare, final int finalBitsetSize) {
+        return comparisonParallelism(bs, new ImmutableBitSet[] {toCompare}, finalBitsetSize);
+    }
+
+    private int comparisonParallelism(final ImmutableBitSet[] bs, final ImmutableBitSet[] queries, final int finalBitsetSize) {
+        if (costModel == null) {
+            return bs.length <= minArraySize ? SEQUENTIAL : parallelism;
+        }
+        long words = 0L;
+        for (ImmutableBitSet query : queries) {
+            words += Math.max(BitSetWords.bits2words(finalBitsetSize), BitSetWords.numWords(query));
+        }
+        int degree = costModel.comparisonParallelism(bs.length * words, parallelism);
+        return degree == 1 ? SEQUENTIAL : degree;
+    }
+
+    private MutableBitSet forkJoin(final ImmutableBitSet[] bs, final int finalBitsetSize, final AssociativeOp operation, final int degree, final CancellationToken token) {
+        return ((ForkJoinPool) threadPool).invoke(forkJoinTask(bs, finalBitsetSize, operation, degree, token));
+    }
+
+    private ForkJoinReduceTask forkJoinTask(final ImmutableBitSet[] bs, final int finalBitsetSize, final AssociativeOp operation, final int degree, final CancellationToken token) {
+        int leafSize = ForkJoinReduceTask.leafSize(bs.length, Math.min(degree, ((ForkJoinPool) threadPool).getParallelism()));
+        return new ForkJoinReduceTask(bs, 0, bs.length, finalBitsetSize, leafSize, operation, token, shortCircuit(operation, finalBitsetSize));
+    }
+
+    private static void checkBitsets(final ImmutableBitSet[] bs) {
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+    }
+
+    private void checkMode(final AssociativeOp operation, final ExecutionMode mode) {
+        if (mode == ExecutionMode.FORK_JOIN && !(threadPool instanceof ForkJoinPool)) {
+            throw new IllegalStateException("fork/join execution requires a ForkJoinPool, got " + threadPool.getClass().getName());
+        }
+        if (mode == ExecutionMode.WORD_RANGE && !(operation instanceof WordwiseOp)) {
+            throw new IllegalArgumentException("word range execution requires a WordwiseOp, got " + operation.getClass().getName());
+        }
+        if (mode == ExecutionMode.TILED && !(operation instanceof WordwiseOp)) {
+            throw new IllegalArgumentException("tiled execution requires a WordwiseOp, got " + operation.getClass().getName());
+        }
+    }
+
+    private <T> void checkMode(final ComparisonOp<T> operation, final ExecutionMode mode) {
+        if (mode != ExecutionMode.SLICED && mode != ExecutionMode.TILED) {
+            throw new IllegalArgumentException("comparisons can only be " + ExecutionMode.SLICED + " or " + ExecutionMode.TILED + ", was " + mode);
+        }
+        if (mode == ExecutionMode.TILED && !(operation instanceof WordwiseComparisonOp)) {
+            throw new IllegalArgumentException("tiled execution requires a WordwiseComparisonOp, got " + operation.getClass().getName());
+        }
+    }
+
+    private MutableBitSet wordRange(final ImmutableBitSet[] bs, final int finalBitsetSize, final AssociativeOp operation, final int degree, final CancellationToken token) throws Exception {
+        MutableBitSet result = new MutableBitSet(finalBitsetSize);
+        ArrayUtils.await(threadPool.invokeAll(wordRangeOps(bs, result, (WordwiseOp) operation, degree, token, shortCircuit(operation, finalBitsetSize))));
+        return result;
+    }
+
+    private static List<Callable<Void>> wordRangeOps(final ImmutableBitSet[] bs, final MutableBitSet result, final WordwiseOp operation, final int degree, final CancellationToken token, final ShortCircuit shortCircuit) {
+        long[] words = BitSetWords.words(result);
+        int numWords = BitSetWords.numWords(result);
+
+        int wordsPerPart = wordsPerPart(numWords, degree);
+        List<Callable<Void>> ops = new ArrayList<Callable<Void>>();
+        for (int fromWord = 0; fromWord < numWords; fromWord += wordsPerPart) {
+            ops.add(new WordRangeCallable(bs, words, fromWord, Math.min(numWords, fromWord + wordsPerPart), operation, token, shortCircuit));
+        }
+        return ops;
+    }
+
+    private static List<Callable<Void>> expressionOps(final Expression expression, final MutableBitSet result, final int degree, final QueryPlan.Execution execution) {
+        long[] words = BitSetWords.words(result);
+        int numWords = BitSetWords.numWords(result);
+
+        ExpressionKernel kernel = ExpressionKernel.of(expression);
+        ExpressionKernel.Binding binding = ExpressionKernel.bind(expression);
+        int wordsPerPart = wordsPerPart(numWords, degree);
+        List<Callable<Void>> ops = new ArrayList<Callable<Void>>();
+        for (int fromWord = 0; fromWord < numWords; fromWord += wordsPerPart) {
+            ops.add(new ExpressionCallable(kernel, binding, expression.height(), words, fromWord, Math.min(numWords, fromWord + wordsPerPart), execution));
+        }
+        return ops;
+    }
+
+    private static void evaluate(final List<Callable<Void>> ops) throws Exception {
+        for (Callable<Void> op : ops) {
+            op.call();
+        }
+    }
+
+    /**
+     * Splits numWords in at most degree ranges, aligned on cache lines so that no two tasks write the same line
+     */
+    private static int wordsPerPart(final int numWords, final int degree) {
+        int lines = (numWords + WORDS_PER_CACHE_LINE - 1) / WORDS_PER_CACHE_LINE;
+        int parts = Math.max(1, Math.min(lines, degree));
+        return Math.max(1, (lines + parts - 1) / parts) * WORDS_PER_CACHE_LINE;
+    }
+
+    private MutableBitSet tiled(final ImmutableBitSet[] bs, final int finalBitsetSize, final AssociativeOp operation, final CancellationToken token) throws Exception {
+        MutableBitSet result = new MutableBitSet(finalBitsetSize);
+        ArrayUtils.await(threadPool.invokeAll(tiledOps(bs, result, (WordwiseOp) operation, token, shortCircuit(operation, finalBitsetSize))));
+        return result;
+    }
+
+    private List<Callable<Void>> tiledOps(final ImmutableBitSet[] bs, final MutableBitSet result, final WordwiseOp operation, final CancellationToken token, final ShortCircuit shortCircuit) {
+        long[] words = BitSetWords.words(result);
+        int numWords = BitSetWords.numWords(result);
+
+        // one task per column of tiles; columns are cache line aligned and small enough to be balanced by the pool
+        int wordsPerTile = tiling.getWordsPerTile();
+        List<Callable<Void>> ops = new ArrayList<Callable<Void>>();
+        for (int fromWord = 0; fromWord < numWords; fromWord += wordsPerTile) {
+            ops.add(new TiledAssociativeCallable(bs, words, fromWord, Math.min(numWords, fromWord + wordsPerTile), tiling.getBitsetsPerTile(), operation, token, shortCircuit));
+        }
+        return ops;
+    }
+
+    private static int parallelismOf(final ExecutorService threadPool) {
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+        if (threadPool instanceof ForkJoinPool) {
+            return ((ForkJoinPool) threadPool).getParallelism();
+        }
+        if (threadPool instanceof ThreadPoolExecutor) {
+            return Math.max(1, Math.min(availableProcessors, ((ThreadPoolExecutor) threadPool).getMaximumPoolSize()));
+        }
+        return availableProcessors;
     }
 
     private static ImmutableBitSet[] immutableCopy(final MutableBitSet[] mutableBitsets) {
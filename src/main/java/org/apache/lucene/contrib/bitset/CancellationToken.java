@@ -0,0 +1,109 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the latency of an operation. The tasks of an operation check the token every {@link #CHECK_INTERVAL} bitsets (or tiles, or word ranges) and stop early once it is cancelled, its deadline has passed or their thread is interrupted.<br/><br/>
+ * A token can be shared by the operations of a single request, so that they all draw on the same budget
+ */
+public final class CancellationToken {
+
+    /**
+     * The number of bitsets processed between two checks of the token
+     */
+    public static final int CHECK_INTERVAL = 64;
+
+    private final long deadline;
+    private final boolean hasDeadline;
+    private volatile boolean cancelled;
+    private volatile boolean stopped;
+
+    /**
+     * Creates a new CancellationToken without deadline, stopping operations only when cancelled
+     */
+    public CancellationToken() {
+        this(0L, false);
+    }
+
+    private CancellationToken(final long deadline, final boolean hasDeadline) {
+        this.deadline = deadline;
+        this.hasDeadline = hasDeadline;
+    }
+
+    /**
+     * @param timeout the time budget, starting now
+     * @param unit    the unit of the timeout
+     * @return a new CancellationToken stopping operations when the given time budget is spent
+     */
+    public static CancellationToken withTimeout(final long timeout, final TimeUnit unit) {
+        return withDeadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * @param deadline the deadline, as a {@link System#nanoTime()} value
+     * @return a new CancellationToken stopping operations when the given deadline has passed
+     */
+    public static CancellationToken withDeadline(final long deadline) {
+        return new CancellationToken(deadline, true);
+    }
+
+    /**
+     * Asks the operations using this token to stop as soon as possible
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if {@link #cancel()} was called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if this token has a deadline and it has passed
+     */
+    public boolean isExpired() {
+        return hasDeadline && System.nanoTime() - deadline > 0L;
+    }
+
+    /**
+     * @return true if an operation using this token stopped before completing
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Called by tasks, records that an operation stopped early when returning true
+     *
+     * @return true if the calling task should stop
+     */
+    boolean shouldStop() {
+        if (cancelled || isExpired() || Thread.currentThread().isInterrupted()) {
+            stopped = true;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Counts the intersections of a tile of the upper triangle of the co-occurrence matrix, the rows of one block of bitsets against the columns of another, a block of words at a time so that the words of both blocks stay in the cache while every pair is counted.<br/>
+ * The count of a pair is written at both [row][column] and [column][row] of a row major matrix, so a tile owns its cells and tiles need no merge. Given a query, only the bits also set in it are counted
+ */
+class CoOccurrenceCallable implements Callable<Void> {
+
+    private static final IntersectionCount INTERSECTION = new IntersectionCount();
+
+    private final ImmutableBitSet[] bs;
+    private final ImmutableBitSet query;
+    private final int rowFrom;
+    private final int rowTo;
+    private final int columnFrom;
+    private final int columnTo;
+    private final int wordsPerBlock;
+    private final long[] longMatrix;
+    private final int[] intMatrix;
+
+    CoOccurrenceCallable(final ImmutableBitSet[] bs, final ImmutableBitSet query, final int rowFrom, final int rowTo, final int columnFrom, final int columnTo, final int wordsPerBlock, final long[] longMatrix, final int[] intMatrix) {
+        this.bs = bs;
+        this.query = query;
+        this.rowFrom = rowFrom;
+        this.rowTo = rowTo;
+        this.columnFrom = columnFrom;
+        this.columnTo = columnTo;
+        this.wordsPerBlock = wordsPerBlock;
+        this.longMatrix = longMatrix;
+        this.intMatrix = intMatrix;
+    }
+
+    /**
+     * @return the tiles of the upper triangle of the matrix of the given bitsets, diagonal included, the matrix being either a long[] or an int[]
+     */
+    static List<Callable<Void>> tiles(final ImmutableBitSet[] bs, final ImmutableBitSet query, final Tiling tiling, final long[] longMatrix, final int[] intMatrix) {
+        int bitsetsPerTile = tiling.getBitsetsPerTile();
+        // a block of words of the rows, of the columns and of the query
+        int wordsPerBlock = tiling.wordsPerBlock(2 * bitsetsPerTile + 1);
+        List<Callable<Void>> tiles = new ArrayList<Callable<Void>>();
+        for (int rowFrom = 0; rowFrom < bs.length; rowFrom += bitsetsPerTile) {
+            for (int columnFrom = rowFrom; columnFrom < bs.length; columnFrom += bitsetsPerTile) {
+                tiles.add(new CoOccurrenceCallable(bs, query, rowFrom, Math.min(bs.length, rowFrom + bitsetsPerTile), columnFrom, Math.min(bs.length, columnFrom + bitsetsPerTile), wordsPerBlock, longMatrix, intMatrix));
+            }
+        }
+        return tiles;
+    }
+
+    @Override
+    public Void call() {
+        int rows = rowTo - rowFrom;
+        int columns = columnTo - columnFrom;
+        long[] counts = new long[rows * columns];
+        long[] queryWords = query == null ? null : BitSetWords.words(query);
+        int maxLength = query == null ? Integer.MAX_VALUE : BitSetWords.numWords(query);
+        int length = 0;
+        for (int i = rowFrom; i < rowTo; i++) {
+            length = Math.max(length, BitSetWords.numWords(bs[i]));
+        }
+        length = Math.min(length, maxLength);
+
+        for (int blockStart = 0; blockStart < length; blockStart += wordsPerBlock) {
+            int blockEnd = Math.min(length, blockStart + wordsPerBlock);
+            for (int i = rowFrom; i < rowTo; i++) {
+                long[] rowWords = BitSetWords.words(bs[i]);
+                int rowLength = Math.min(blockEnd, BitSetWords.numWords(bs[i]));
+                // the upper triangle only, on a tile of the diagonal
+                for (int j = Math.max(i, columnFrom); j < columnTo; j++) {
+                    long[] columnWords = BitSetWords.words(bs[j]);
+                    int shared = Math.min(rowLength, BitSetWords.numWords(bs[j]));
+                    long count = 0L;
+                    if (queryWords == null) {
+                        for (int w = blockStart; w < shared; w++) {
+                            count += INTERSECTION.count(rowWords[w], columnWords[w]);
+                        }
+                    } else {
+                        for (int w = blockStart; w < shared; w++) {
+                            count += INTERSECTION.count(rowWords[w] & queryWords[w], columnWords[w]);
+                        }
+                    }
+                    counts[(i - rowFrom) * columns + j - columnFrom] += count;
+                }
+            }
+        }
+
+        int k = bs.length;
+        for (int i = rowFrom; i < rowTo; i++) {
+            for (int j = Math.max(i, columnFrom); j < columnTo; j++) {
+                long count = counts[(i - rowFrom) * columns + j - columnFrom];
+                if (longMatrix != null) {
+                    longMatrix[i * k + j] = count;
+                    longMatrix[j * k + i] = count;
+                } else {
+                    intMatrix[i * k + j] = (int) count;
+                    intMatrix[j * k + i] = (int) count;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+/**
+ * The results of a {@link org.apache.lucene.contrib.bitset.ops.CompositeComparisonOp}, one array per metric, each holding the result for bs[N] at position N
+ */
+public final class ComparisonMetrics {
+
+    private final long[][] counts;
+    private final double[][] similarities;
+
+    ComparisonMetrics(final long[][] counts, final double[][] similarities) {
+        this.counts = counts;
+        this.similarities = similarities;
+    }
+
+    /**
+     * @param metric the position of a count in {@link org.apache.lucene.contrib.bitset.ops.CompositeComparisonOp#getCounts()}
+     * @return the count summed over all the words, for each bitset; not a copy
+     */
+    public long[] getCounts(final int metric) {
+        return counts[metric];
+    }
+
+    /**
+     * @param metric the position of a similarity in {@link org.apache.lucene.contrib.bitset.ops.CompositeComparisonOp#getSimilarities()}
+     * @return the similarity, for each bitset; not a copy
+     */
+    public double[] getSimilarities(final int metric) {
+        return similarities[metric];
+    }
+}
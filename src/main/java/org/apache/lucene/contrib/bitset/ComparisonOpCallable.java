@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.lucene.contrib.bitset.ops.ComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.OverlapSimilarity;
 
 import org.dishevelled.bitset.ImmutableBitSet;
 import org.dishevelled.bitset.MutableBitSet;
@@ -33,18 +34,39 @@ class ComparisonOpCallable<T> extends AbstractOpCallable<T[]> {
     private final ComparisonOp<T> operation;
 
     public ComparisonOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet toCompare, final ComparisonOp<T> operation) {
-        super(bs, fromIndex, toIndex, finalBitsetSize);
+        this(bs, fromIndex, toIndex, finalBitsetSize, toCompare, operation, null);
+    }
+
+    public ComparisonOpCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet toCompare, final ComparisonOp<T> operation, final CancellationToken token) {
+        super(bs, fromIndex, toIndex, finalBitsetSize, token);
         this.toCompare = toCompare;
         this.operation = operation;
     }
 
     @Override
-    public T[] call() throws Exception {
+    public T[] call() {
         MutableBitSet accumulator = new MutableBitSet(finalBitsetSize);
         Object[] result = new Object[toIndex - fromIndex];
+        if (operation instanceof OverlapSimilarity) {
+            return similarities((OverlapSimilarity) operation, result);
+        }
         for (int i = fromIndex; i < toIndex; i++) {
+            if (shouldStop(i - fromIndex)) {
+                break;
+            }
             result[i - fromIndex] = operation.compute(accumulator, bs[i], toCompare);
         }
         return ArrayUtils.typedArray(result);
     }
+
+    private T[] similarities(final OverlapSimilarity similarity, final Object[] result) {
+        long toCompareCount = toCompare.cardinality();
+        for (int i = fromIndex; i < toIndex; i++) {
+            if (shouldStop(i - fromIndex)) {
+                break;
+            }
+            result[i - fromIndex] = Double.valueOf(Overlaps.similarity(similarity, bs[i], toCompare, toCompareCount));
+        }
+        return ArrayUtils.typedArray(result);
+    }
 }
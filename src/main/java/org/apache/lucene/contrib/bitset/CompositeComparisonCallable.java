@@ -0,0 +1,158 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import org.apache.lucene.contrib.bitset.ops.DifferenceCount;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.apache.lucene.contrib.bitset.ops.OverlapSimilarity;
+import org.apache.lucene.contrib.bitset.ops.UnionCount;
+import org.apache.lucene.contrib.bitset.ops.WordwiseComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.XorCount;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Computes all the metrics of a {@link org.apache.lucene.contrib.bitset.ops.CompositeComparisonOp} for the bitsets in [fromIndex, toIndex), in one pass over the words of each of them, writing each result at its own index of the arrays of a {@link ComparisonMetrics}.<br/>
+ * The pass counts the intersection with the bitset used as comparison and the bits of the target, from which the built-in counts and the similarities are derived; other counts are summed word by word in the same pass
+ */
+class CompositeComparisonCallable extends AbstractOpCallable<Void> {
+
+    private static final int INTERSECTION = 0;
+    private static final int UNION = 1;
+    private static final int DIFFERENCE = 2;
+    private static final int XOR = 3;
+    private static final int SUMMED = 4;
+
+    private final ImmutableBitSet toCompare;
+    private final long toCompareCount;
+    private final WordwiseComparisonOp<?>[] counts;
+    private final OverlapSimilarity[] similarities;
+    private final int[] kinds;
+    private final WordwiseComparisonOp<?>[] summed;
+    private final long[][] countResults;
+    private final double[][] similarityResults;
+
+    public CompositeComparisonCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet toCompare, final long toCompareCount, final WordwiseComparisonOp<?>[] counts, final OverlapSimilarity[] similarities, final long[][] countResults, final double[][] similarityResults) {
+        super(bs, fromIndex, toIndex, finalBitsetSize);
+        this.toCompare = toCompare;
+        this.toCompareCount = toCompareCount;
+        this.counts = counts;
+        this.similarities = similarities;
+        this.countResults = countResults;
+        this.similarityResults = similarityResults;
+
+        kinds = new int[counts.length];
+        int summedCount = 0;
+        for (int m = 0; m < counts.length; m++) {
+            kinds[m] = kind(counts[m]);
+            summedCount += kinds[m] == SUMMED ? 1 : 0;
+        }
+        summed = new WordwiseComparisonOp<?>[summedCount];
+        for (int m = 0, s = 0; m < counts.length; m++) {
+            if (kinds[m] == SUMMED) {
+                summed[s++] = counts[m];
+            }
+        }
+    }
+
+    @Override
+    public Void call() {
+        long[] compareWords = BitSetWords.words(toCompare);
+        int compareLength = BitSetWords.numWords(toCompare);
+        long[] sums = new long[summed.length];
+        for (int i = fromIndex; i < toIndex; i++) {
+            long[] words = BitSetWords.words(bs[i]);
+            int length = BitSetWords.numWords(bs[i]);
+            int shared = Math.min(length, compareLength);
+            long intersection = 0L;
+            long targetCount = 0L;
+            if (summed.length == 0) {
+                for (int w = 0; w < shared; w++) {
+                    long word = words[w];
+                    intersection += Long.bitCount(word & compareWords[w]);
+                    targetCount += Long.bitCount(word);
+                }
+                for (int w = shared; w < length; w++) {
+                    targetCount += Long.bitCount(words[w]);
+                }
+            } else {
+                for (int s = 0; s < sums.length; s++) {
+                    sums[s] = 0L;
+                }
+                int maxLength = Math.max(length, compareLength);
+                for (int w = 0; w < maxLength; w++) {
+                    long word = w < length ? words[w] : 0L;
+                    long compareWord = w < compareLength ? compareWords[w] : 0L;
+                    intersection += Long.bitCount(word & compareWord);
+                    targetCount += Long.bitCount(word);
+                    for (int s = 0; s < sums.length; s++) {
+                        sums[s] += summed[s].count(word, compareWord);
+                    }
+                }
+            }
+
+            for (int m = 0, s = 0; m < kinds.length; m++) {
+                countResults[m][i] = count(kinds[m], intersection, targetCount, kinds[m] == SUMMED ? sums[s++] : 0L);
+            }
+            for (int m = 0; m < similarities.length; m++) {
+                similarityResults[m][i] = similarities[m].similarity(intersection, targetCount, toCompareCount);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return a callable computing the metrics of the bitsets in [fromIndex, toIndex) into the same arrays
+     */
+    CompositeComparisonCallable slice(final int fromIndex, final int toIndex) {
+        return new CompositeComparisonCallable(bs, fromIndex, toIndex, finalBitsetSize, toCompare, toCompareCount, counts, similarities, countResults, similarityResults);
+    }
+
+    private long count(final int kind, final long intersection, final long targetCount, final long sum) {
+        switch (kind) {
+            case INTERSECTION:
+                return intersection;
+            case UNION:
+                return targetCount + toCompareCount - intersection;
+            case DIFFERENCE:
+                return targetCount - intersection;
+            case XOR:
+                return targetCount + toCompareCount - 2 * intersection;
+            default:
+                return sum;
+        }
+    }
+
+    private static int kind(final WordwiseComparisonOp<?> count) {
+        if (count instanceof IntersectionCount) {
+            return INTERSECTION;
+        }
+        if (count instanceof UnionCount) {
+            return UNION;
+        }
+        if (count instanceof DifferenceCount) {
+            return DIFFERENCE;
+        }
+        if (count instanceof XorCount) {
+            return XOR;
+        }
+        return SUMMED;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+
+/**
+ * Estimates the cost of an operation as words x bitsets x per-word cost, and picks the degree of parallelism that minimizes<br/>
+ * <code>sequentialNanos / p + p * nanosPerTask</code><br/>
+ * running sequentially when no degree of parallelism beats the single thread.<br/><br/>
+ * The per-word costs and the task hand-off cost can be given, or measured on the running JVM and thread pool with {@link #calibrate(ExecutorService)}
+ */
+public final class CostModel {
+    private static final int CALIBRATION_WORDS = 16384;
+    private static final int CALIBRATION_ROUNDS = 32;
+    private static final int CALIBRATION_TASKS = 64;
+
+    private final double nanosPerWord;
+    private final double nanosPerComparedWord;
+    private final double nanosPerTask;
+
+    /**
+     * Creates a new CostModel
+     *
+     * @param nanosPerWord         the cost of folding one word of a bitset in an accumulator, for associative operations
+     * @param nanosPerComparedWord the cost of comparing one word of a bitset, for comparison operations
+     * @param nanosPerTask         the cost of handing a task to the thread pool and collecting its result
+     */
+    public CostModel(final double nanosPerWord, final double nanosPerComparedWord, final double nanosPerTask) {
+        if (!(nanosPerWord > 0.0d) || !(nanosPerComparedWord > 0.0d) || !(nanosPerTask > 0.0d)) {
+            throw new IllegalArgumentException("costs must be positive");
+        }
+        this.nanosPerWord = nanosPerWord;
+        this.nanosPerComparedWord = nanosPerComparedWord;
+        this.nanosPerTask = nanosPerTask;
+    }
+
+    /**
+     * @return a CostModel with conservative costs for a current server class core
+     */
+    public static CostModel defaultCostModel() {
+        return new CostModel(0.5d, 0.75d, 20000.0d);
+    }
+
+    /**
+     * Measures the per-word costs on this JVM and the task hand-off cost of the given thread pool. It runs for a few milliseconds
+     *
+     * @param threadPool the thread pool the executor will use
+     * @return a calibrated CostModel
+     * @throws InterruptedException if interrupted while waiting for the calibration tasks
+     * @throws ExecutionException   if a calibration task fails
+     */
+    public static CostModel calibrate(final ExecutorService threadPool) throws InterruptedException, ExecutionException {
+        MutableBitSet a = new MutableBitSet(CALIBRATION_WORDS * 64);
+        MutableBitSet b = new MutableBitSet(CALIBRATION_WORDS * 64);
+        for (int i = 0; i + 1 < CALIBRATION_WORDS * 64; i += 3) {
+            a.setQuick(i);
+            b.setQuick(i + 1);
+        }
+        ImmutableBitSet immutableA = a.immutableCopy();
+        ImmutableBitSet immutableB = b.immutableCopy();
+
+        // first round warms up, second round measures
+        double nanosPerWord = 0.0d;
+        double nanosPerComparedWord = 0.0d;
+        long sink = 0L;
+        for (int round = 0; round < 2; round++) {
+            long startAt = System.nanoTime();
+            for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+                a.or(immutableB);
+            }
+            nanosPerWord = (System.nanoTime() - startAt) / (double) (CALIBRATION_ROUNDS * CALIBRATION_WORDS);
+
+            startAt = System.nanoTime();
+            for (int i = 0; i < CALIBRATION_ROUNDS; i++) {
+                sink += ImmutableBitSet.andCount(immutableA, immutableB);
+            }
+            nanosPerComparedWord = (System.nanoTime() - startAt) / (double) (CALIBRATION_ROUNDS * CALIBRATION_WORDS);
+        }
+
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>(CALIBRATION_TASKS);
+        for (int i = 0; i < CALIBRATION_TASKS; i++) {
+            final long seed = sink + i;
+            tasks.add(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return Long.valueOf(seed);
+                }
+            });
+        }
+        double nanosPerTask = 0.0d;
+        for (int round = 0; round < 2; round++) {
+            long startAt = System.nanoTime();
+            ArrayUtils.await(threadPool.invokeAll(tasks));
+            nanosPerTask = (System.nanoTime() - startAt) / (double) CALIBRATION_TASKS;
+        }
+
+        // timers are coarse on some platforms, never let a cost drop to zero
+        return new CostModel(Math.max(0.01d, nanosPerWord), Math.max(0.01d, nanosPerComparedWord), Math.max(100.0d, nanosPerTask));
+    }
+
+    /**
+     * @param words          the number of words to fold, summed over all bitsets
+     * @param maxParallelism the maximum degree of parallelism
+     * @return the degree of parallelism for an associative operation, 1 meaning sequential
+     */
+    public int associativeParallelism(final long words, final int maxParallelism) {
+        return parallelism(words * nanosPerWord, maxParallelism);
+    }
+
+    /**
+     * @param words          the number of words to compare, summed over all bitsets
+     * @param maxParallelism the maximum degree of parallelism
+     * @return the degree of parallelism for a comparison operation, 1 meaning sequential
+     */
+    public int comparisonParallelism(final long words, final int maxParallelism) {
+        return parallelism(words * nanosPerComparedWord, maxParallelism);
+    }
+
+    private int parallelism(final double sequentialNanos, final int maxParallelism) {
+        // minimum of sequentialNanos / p + p * nanosPerTask
+        long optimal = Math.round(Math.sqrt(sequentialNanos / nanosPerTask));
+        int p = (int) Math.max(1L, Math.min(maxParallelism, optimal));
+        if (p == 1 || sequentialNanos / p + p * nanosPerTask >= sequentialNanos) {
+            return 1;
+        }
+        return p;
+    }
+
+    /**
+     * @return the cost of folding one word, in nanoseconds
+     */
+    public double getNanosPerWord() {
+        return nanosPerWord;
+    }
+
+    /**
+     * @return the cost of comparing one word, in nanoseconds
+     */
+    public double getNanosPerComparedWord() {
+        return nanosPerComparedWord;
+    }
+
+    /**
+     * @return the cost of handing a task to the thread pool, in nanoseconds
+     */
+    public double getNanosPerTask() {
+        return nanosPerTask;
+    }
+
+    @Override
+    public String toString() {
+        return "CostModel[nanosPerWord=" + nanosPerWord + ", nanosPerComparedWord=" + nanosPerComparedWord + ", nanosPerTask=" + nanosPerTask + "]";
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+/**
+ * The strategy used by {@link BitsetOperationsExecutor} to split and reduce an {@link org.apache.lucene.contrib.bitset.ops.AssociativeOp}
+ */
+public enum ExecutionMode {
+
+    /**
+     * The input array is split in flat slices submitted with {@link java.util.concurrent.ExecutorService#invokeAll(java.util.Collection)}; partial results are merged on the calling thread
+     */
+    SLICED,
+
+    /**
+     * The input array is recursively halved and the partial results are reduced as a balanced binary tree on a {@link java.util.concurrent.ForkJoinPool}, so that merges run in parallel and idle workers steal pending halves
+     */
+    FORK_JOIN,
+
+    /**
+     * The result is split in contiguous ranges of 64-bit words, cache line aligned; each task sweeps all the input bitsets over its own range and writes directly in the result, so there are no partial results to merge. Requires a {@link org.apache.lucene.contrib.bitset.ops.WordwiseOp}.<br/>
+     * The result holds the words of the final bitset size and no more: words of longer inputs past them are ignored, whereas {@link #SLICED} and {@link #FORK_JOIN} grow their result to hold them. The same goes for {@link #TILED}
+     */
+    WORD_RANGE,
+
+    /**
+     * The work is split in tiles of bitsets by words, shaped by the executor {@link Tiling}. Associative operations run one task per column of tiles, folding a tile of bitsets into each accumulator word while it is in a register; comparisons walk each slice of bitsets one block of words at a time, so the block of the bitset to compare stays in cache. Requires a {@link org.apache.lucene.contrib.bitset.ops.WordwiseOp} or a {@link org.apache.lucene.contrib.bitset.ops.WordwiseComparisonOp}.<br/>
+     * Like {@link #WORD_RANGE}, associative operations ignore the words of longer inputs past the final bitset size
+     */
+    TILED
+}
@@ -0,0 +1,277 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import org.apache.lucene.contrib.bitset.ops.AND;
+import org.apache.lucene.contrib.bitset.ops.NOT;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.apache.lucene.contrib.bitset.ops.WordwiseOp;
+import org.apache.lucene.contrib.bitset.ops.XOR;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * A boolean expression over bitsets, such as <code>(A OR B OR C) AND D AND NOT (E OR F)</code>, evaluated by {@link BitsetOperationsExecutor#perform(Expression, int)} in a single fused pass: the whole tree is computed one block of words at a time, so no intermediate bitset is materialized and every leaf is read once.<br/><br/>
+ * Each node folds its operands, from the first one, with a {@link WordwiseOp}; so <code>D AND NOT (E OR F)</code> is <code>andNot(D, or(E, F))</code>. Expressions are immutable and can be shared by several trees
+ */
+public abstract class Expression {
+
+    static final long UNKNOWN = -1L;
+
+    Expression() {
+        // only leaves and nodes
+    }
+
+    /**
+     * @param bitset a bitset
+     * @return a leaf of an expression tree
+     */
+    public static Expression leaf(final ImmutableBitSet bitset) {
+        return leaf(null, bitset);
+    }
+
+    /**
+     * @param name   the name of the leaf, shown by {@link #toString()}
+     * @param bitset a bitset
+     * @return a leaf of an expression tree
+     */
+    public static Expression leaf(final String name, final ImmutableBitSet bitset) {
+        if (bitset == null) {
+            throw new IllegalArgumentException("bitset cannot be null");
+        }
+        return new Leaf(name, bitset, UNKNOWN);
+    }
+
+    /**
+     * @param name        the name of the leaf, shown by {@link #toString()}
+     * @param bitset      a bitset
+     * @param cardinality the cardinality of the bitset, when already known (a cached filter usually knows it), so that the planner does not have to count it
+     * @return a leaf of an expression tree
+     */
+    public static Expression leaf(final String name, final ImmutableBitSet bitset, final long cardinality) {
+        if (bitset == null) {
+            throw new IllegalArgumentException("bitset cannot be null");
+        }
+        if (cardinality < 0L) {
+            throw new IllegalArgumentException("cardinality cannot be negative, was " + cardinality);
+        }
+        return new Leaf(name, bitset, cardinality);
+    }
+
+    /**
+     * @param operands at least one expression
+     * @return the intersection of the given expressions
+     */
+    public static Expression and(final Expression... operands) {
+        return of(new AND(), operands);
+    }
+
+    /**
+     * @param operands at least one expression
+     * @return the union of the given expressions
+     */
+    public static Expression or(final Expression... operands) {
+        return of(new OR(), operands);
+    }
+
+    /**
+     * @param operands at least one expression
+     * @return the symmetric difference of the given expressions
+     */
+    public static Expression xor(final Expression... operands) {
+        return of(new XOR(), operands);
+    }
+
+    /**
+     * @param base        the expression to subtract from
+     * @param subtrahends the expressions to subtract
+     * @return the bits of base not in any of the subtrahends
+     */
+    public static Expression andNot(final Expression base, final Expression... subtrahends) {
+        Expression[] operands = new Expression[subtrahends.length + 1];
+        operands[0] = base;
+        System.arraycopy(subtrahends, 0, operands, 1, subtrahends.length);
+        return of(new NOT(), operands);
+    }
+
+    /**
+     * @param operation the operation folding the operands, from the first one
+     * @param operands  at least one expression
+     * @return a node of an expression tree
+     */
+    public static Expression of(final WordwiseOp operation, final Expression... operands) {
+        if (operation == null) {
+            throw new IllegalArgumentException("operation cannot be null");
+        }
+        if (operands == null || operands.length == 0) {
+            throw new IllegalArgumentException("operands cannot be null or empty");
+        }
+        for (Expression operand : operands) {
+            if (operand == null) {
+                throw new IllegalArgumentException("operands cannot contain null");
+            }
+        }
+        return new Node(operation, operands.clone(), false, Node.UNPLANNED);
+    }
+
+    /**
+     * @return the number of leaves of this expression, counting a shared subexpression once per occurrence
+     */
+    abstract int leafCount();
+
+    /**
+     * @return the number of levels of this expression, 1 for a leaf
+     */
+    abstract int height();
+
+    /**
+     * @return a hash of the shape of this expression, its operations and where its leaves are, computed once when the expression is built
+     */
+    abstract int shapeHash();
+
+    /**
+     * A bitset of the expression tree
+     */
+    static final class Leaf extends Expression {
+        private final String name;
+        private final ImmutableBitSet bitset;
+        private final long cardinality;
+
+        private Leaf(final String name, final ImmutableBitSet bitset, final long cardinality) {
+            this.name = name;
+            this.bitset = bitset;
+            this.cardinality = cardinality;
+        }
+
+        ImmutableBitSet bitset() {
+            return bitset;
+        }
+
+        /**
+         * @return the cardinality given when the leaf was created, {@link #UNKNOWN} if none
+         */
+        long cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int leafCount() {
+            return 1;
+        }
+
+        @Override
+        int height() {
+            return 1;
+        }
+
+        @Override
+        int shapeHash() {
+            return 1;
+        }
+
+        @Override
+        public String toString() {
+            return name == null ? "bitset" : name;
+        }
+    }
+
+    /**
+     * An operation of the expression tree. A planned node also carries the kernel chosen by the planner and its index in the plan
+     */
+    static final class Node extends Expression {
+        static final int UNPLANNED = -1;
+
+        private final WordwiseOp operation;
+        private final Expression[] operands;
+        private final boolean sparse;
+        private final int id;
+        private final int leafCount;
+        private final int height;
+        private final int shapeHash;
+
+        Node(final WordwiseOp operation, final Expression[] operands, final boolean sparse, final int id) {
+            this.operation = operation;
+            this.operands = operands;
+            this.sparse = sparse;
+            this.id = id;
+            int leaves = 0;
+            int tallest = 0;
+            int hash = 31 * operation.getClass().hashCode() + (sparse ? 1 : 0);
+            for (Expression operand : operands) {
+                leaves += operand.leafCount();
+                tallest = Math.max(tallest, operand.height());
+                hash = 31 * hash + operand.shapeHash();
+            }
+            this.leafCount = leaves;
+            this.height = tallest + 1;
+            this.shapeHash = hash;
+        }
+
+        WordwiseOp operation() {
+            return operation;
+        }
+
+        Expression[] operands() {
+            return operands;
+        }
+
+        /**
+         * @return true if the node iterates the set bits of its first operand, a leaf, probing the others, instead of folding words
+         */
+        boolean sparse() {
+            return sparse;
+        }
+
+        /**
+         * @return the index of the node in its plan, {@link #UNPLANNED} if the node was not planned
+         */
+        int id() {
+            return id;
+        }
+
+        @Override
+        int leafCount() {
+            return leafCount;
+        }
+
+        @Override
+        int height() {
+            return height;
+        }
+
+        @Override
+        int shapeHash() {
+            return shapeHash;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(operation.getClass().getSimpleName()).append('(');
+            for (int i = 0; i < operands.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(operands[i]);
+            }
+            return sb.append(')').toString();
+        }
+    }
+}
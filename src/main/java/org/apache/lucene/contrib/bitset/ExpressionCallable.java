@@ -0,0 +1,59 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Computes the words [fromWord, toWord) of the result of an expression, a block of {@link BitSetWords#BLOCK_WORDS} words at a time: each node folds its operands into a block sized buffer, one per level of the tree, so the whole evaluation stays in the L1 cache and only the leaves are read from memory.<br/>
+ * The expression is evaluated by the {@link ExpressionKernel} cached for its shape, with its leaves bound by an {@link ExpressionKernel.Binding}
+ */
+class ExpressionCallable implements Callable<Void> {
+
+    private final ExpressionKernel kernel;
+    private final ExpressionKernel.Binding binding;
+    private final int height;
+    private final long[] result;
+    private final int fromWord;
+    private final int toWord;
+    private final QueryPlan.Execution execution;
+
+    public ExpressionCallable(final ExpressionKernel kernel, final ExpressionKernel.Binding binding, final int height, final long[] result, final int fromWord, final int toWord, final QueryPlan.Execution execution) {
+        this.kernel = kernel;
+        this.binding = binding;
+        this.height = height;
+        this.result = result;
+        this.fromWord = fromWord;
+        this.toWord = toWord;
+        this.execution = execution;
+    }
+
+    @Override
+    public Void call() {
+        long[][] buffers = new long[height + 1][BitSetWords.BLOCK_WORDS];
+        long[] block = buffers[0];
+        for (int from = fromWord; from < toWord; from += BitSetWords.BLOCK_WORDS) {
+            int length = Math.min(BitSetWords.BLOCK_WORDS, toWord - from);
+            kernel.evaluate(binding, from, length, block, buffers, 1, execution);
+            System.arraycopy(block, 0, result, from, length);
+        }
+        return null;
+    }
+}
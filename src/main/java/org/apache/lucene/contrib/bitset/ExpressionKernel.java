@@ -0,0 +1,325 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.contrib.bitset.ops.Element;
+import org.apache.lucene.contrib.bitset.ops.WordwiseOp;
+
+/**
+ * The evaluation tree of an expression shape: the operations, the kernels chosen by the planner and where the leaves are, but not the leaves themselves, which are bound at each evaluation.<br/>
+ * Trees are built once per shape and cached by the hash the expression computed when it was built, so a hot query shape reuses its tree without walking the expression to key it. The tree is still interpreted: each node folds its operands a block of words at a time, non-leaf operands through a block buffer of their own
+ */
+abstract class ExpressionKernel {
+
+    /**
+     * The number of shapes kept, the least recently used shape is evicted when the cache is full
+     */
+    static final int MAX_CACHED_SHAPES = 1024;
+
+    private static final Map<Integer, ExpressionKernel> KERNELS = Collections.synchronizedMap(new LinkedHashMap<Integer, ExpressionKernel>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, ExpressionKernel> eldest) {
+            return size() > MAX_CACHED_SHAPES;
+        }
+    });
+
+    /**
+     * Writes the words [from, from + length) of the expression into out, using buffers[depth] and below as scratch space
+     */
+    abstract void evaluate(Binding binding, int from, int length, long[] out, long[][] buffers, int depth, QueryPlan.Execution execution);
+
+    /**
+     * @return 1 if the expression has the bit at the given index set, 0 otherwise
+     */
+    abstract long probe(Binding binding, long index);
+
+    /**
+     * @return true if the given expression has the shape this kernel was built for
+     */
+    abstract boolean matches(Expression expression);
+
+    /**
+     * @param expression an expression
+     * @return the kernel of the shape of the given expression, from the cache if it was already built. A kernel cached under the same hash for another shape is replaced
+     */
+    static ExpressionKernel of(final Expression expression) {
+        Integer shape = expression.shapeHash();
+        ExpressionKernel kernel = KERNELS.get(shape);
+        if (kernel == null || !kernel.matches(expression)) {
+            kernel = new Builder().build(expression);
+            KERNELS.put(shape, kernel);
+        }
+        return kernel;
+    }
+
+    /**
+     * @return the number of shapes in the cache
+     */
+    static int cachedShapes() {
+        return KERNELS.size();
+    }
+
+    /**
+     * @param expression an expression
+     * @return the leaves and the operations of the given expression, in the order its kernel expects them
+     */
+    static Binding bind(final Expression expression) {
+        Binding binding = new Binding();
+        binding.bind(expression);
+        return binding;
+    }
+
+    /**
+     * The leaves (words and number of words in use), the operations and the plan ids of the nodes of an expression, numbered in pre-order.<br/>
+     * Plan ids are bound rather than built in: an unplanned expression and a planned one can share a shape, hence a kernel
+     */
+    static final class Binding {
+        private final List<long[]> words = new ArrayList<long[]>();
+        private final List<Integer> lengths = new ArrayList<Integer>();
+        private final List<WordwiseOp> operations = new ArrayList<WordwiseOp>();
+        private final List<Integer> ids = new ArrayList<Integer>();
+        private long[][] leafWords;
+        private int[] leafLengths;
+        private WordwiseOp[] nodeOperations;
+        private int[] nodeIds;
+
+        private void bind(final Expression expression) {
+            collect(expression);
+            leafWords = words.toArray(new long[words.size()][]);
+            leafLengths = new int[lengths.size()];
+            for (int i = 0; i < leafLengths.length; i++) {
+                leafLengths[i] = lengths.get(i);
+            }
+            nodeOperations = operations.toArray(new WordwiseOp[operations.size()]);
+            nodeIds = new int[ids.size()];
+            for (int i = 0; i < nodeIds.length; i++) {
+                nodeIds[i] = ids.get(i);
+            }
+        }
+
+        private void collect(final Expression expression) {
+            if (expression instanceof Expression.Leaf) {
+                Expression.Leaf leaf = (Expression.Leaf) expression;
+                words.add(BitSetWords.words(leaf.bitset()));
+                lengths.add(BitSetWords.numWords(leaf.bitset()));
+                return;
+            }
+            Expression.Node node = (Expression.Node) expression;
+            operations.add(node.operation());
+            ids.add(node.id());
+            for (Expression operand : node.operands()) {
+                collect(operand);
+            }
+        }
+    }
+
+    /**
+     * Numbers leaves and nodes in pre-order, like {@link Binding} and {@link QueryPlanner}
+     */
+    private static final class Builder {
+        private int leaves;
+        private int nodes;
+
+        private ExpressionKernel build(final Expression expression) {
+            if (expression instanceof Expression.Leaf) {
+                return new LeafKernel(leaves++);
+            }
+            Expression.Node node = (Expression.Node) expression;
+            int index = nodes++;
+            Expression[] operands = node.operands();
+            ExpressionKernel[] kernels = new ExpressionKernel[operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                kernels[i] = build(operands[i]);
+            }
+            if (node.sparse()) {
+                return new SparseKernel(index, node.operation().getClass(), kernels);
+            }
+            return new FoldKernel(index, node.operation().getClass(), WordFold.of(node.operation()), Algebra.annihilator(node.operation()), kernels);
+        }
+    }
+
+    /**
+     * @return true if the given expression is a node of the given operation type and kind whose operands match the given kernels
+     */
+    private static boolean matches(final Expression expression, final Class<?> type, final boolean sparse, final ExpressionKernel[] operands) {
+        if (!(expression instanceof Expression.Node)) {
+            return false;
+        }
+        Expression.Node node = (Expression.Node) expression;
+        if (node.operation().getClass() != type || node.sparse() != sparse || node.operands().length != operands.length) {
+            return false;
+        }
+        for (int i = 0; i < operands.length; i++) {
+            if (!operands[i].matches(node.operands()[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class LeafKernel extends ExpressionKernel {
+        private final int leaf;
+
+        private LeafKernel(final int leaf) {
+            this.leaf = leaf;
+        }
+
+        @Override
+        void evaluate(final Binding binding, final int from, final int length, final long[] out, final long[][] buffers, final int depth, final QueryPlan.Execution execution) {
+            BitSetWords.load(out, binding.leafWords[leaf], binding.leafLengths[leaf], from, length);
+        }
+
+        @Override
+        long probe(final Binding binding, final long index) {
+            int word = (int) (index >>> 6);
+            return word < binding.leafLengths[leaf] ? (binding.leafWords[leaf][word] >>> index) & 1L : 0L;
+        }
+
+        @Override
+        boolean matches(final Expression expression) {
+            return expression instanceof Expression.Leaf;
+        }
+    }
+
+    /**
+     * Folds the operands of a node word by word, leaves straight from their words
+     */
+    private static final class FoldKernel extends ExpressionKernel {
+        private final int index;
+        private final Class<?> type;
+        private final WordFold fold;
+        private final boolean shortCircuit;
+        private final long annihilator;
+        private final ExpressionKernel[] operands;
+
+        private FoldKernel(final int index, final Class<?> type, final WordFold fold, final Element annihilator, final ExpressionKernel[] operands) {
+            this.index = index;
+            this.type = type;
+            this.fold = fold;
+            this.shortCircuit = annihilator != Element.NONE;
+            this.annihilator = annihilator == Element.FULL ? -1L : 0L;
+            this.operands = operands;
+        }
+
+        @Override
+        void evaluate(final Binding binding, final int from, final int length, final long[] out, final long[][] buffers, final int depth, final QueryPlan.Execution execution) {
+            WordwiseOp operation = binding.nodeOperations[index];
+            operands[0].evaluate(binding, from, length, out, buffers, depth + 1, execution);
+            long[] operand = buffers[depth];
+            for (int i = 1; i < operands.length; i++) {
+                if (shortCircuit && BitSetWords.all(out, length, annihilator)) {
+                    // no other operand can change this block
+                    break;
+                }
+                if (operands[i] instanceof LeafKernel) {
+                    int leaf = ((LeafKernel) operands[i]).leaf;
+                    int last = BitSetWords.wordsInBlock(binding.leafLengths[leaf], from, length);
+                    fold.fold(operation, out, binding.leafWords[leaf], from, last);
+                    fold.foldZeros(operation, out, last, length);
+                } else {
+                    operands[i].evaluate(binding, from, length, operand, buffers, depth + 1, execution);
+                    fold.fold(operation, out, operand, 0, length);
+                }
+            }
+            if (execution != null) {
+                execution.record(binding.nodeIds[index], out, length);
+            }
+        }
+
+        @Override
+        long probe(final Binding binding, final long index) {
+            WordwiseOp operation = binding.nodeOperations[this.index];
+            long bit = operands[0].probe(binding, index);
+            for (int i = 1; i < operands.length; i++) {
+                bit = operation.compute(bit, operands[i].probe(binding, index)) & 1L;
+            }
+            return bit;
+        }
+
+        @Override
+        boolean matches(final Expression expression) {
+            return ExpressionKernel.matches(expression, type, false, operands);
+        }
+    }
+
+    /**
+     * Iterates the set bits of the first operand, a leaf, keeping those for which every other operand has the bit set. Planned for conjunctions whose first operand is very sparse
+     */
+    private static final class SparseKernel extends ExpressionKernel {
+        private final int index;
+        private final Class<?> type;
+        private final int driver;
+        private final ExpressionKernel[] operands;
+
+        private SparseKernel(final int index, final Class<?> type, final ExpressionKernel[] operands) {
+            this.index = index;
+            this.type = type;
+            this.driver = ((LeafKernel) operands[0]).leaf;
+            this.operands = operands;
+        }
+
+        @Override
+        void evaluate(final Binding binding, final int from, final int length, final long[] out, final long[][] buffers, final int depth, final QueryPlan.Execution execution) {
+            long[] words = binding.leafWords[driver];
+            int last = BitSetWords.wordsInBlock(binding.leafLengths[driver], from, length);
+            for (int w = 0; w < length; w++) {
+                out[w] = 0L;
+            }
+            for (int w = 0; w < last; w++) {
+                long word = words[from + w];
+                while (word != 0L) {
+                    long lowest = word & -word;
+                    long bitIndex = ((long) (from + w) << 6) + Long.numberOfTrailingZeros(word);
+                    boolean all = true;
+                    for (int i = 1; i < operands.length && all; i++) {
+                        all = operands[i].probe(binding, bitIndex) != 0L;
+                    }
+                    if (all) {
+                        out[w] |= lowest;
+                    }
+                    word ^= lowest;
+                }
+            }
+            if (execution != null) {
+                execution.record(binding.nodeIds[index], out, length);
+            }
+        }
+
+        @Override
+        long probe(final Binding binding, final long bitIndex) {
+            long bit = operands[0].probe(binding, bitIndex);
+            for (int i = 1; i < operands.length && bit != 0L; i++) {
+                bit = operands[i].probe(binding, bitIndex);
+            }
+            return bit;
+        }
+
+        @Override
+        boolean matches(final Expression expression) {
+            return ExpressionKernel.matches(expression, type, true, operands);
+        }
+    }
+}
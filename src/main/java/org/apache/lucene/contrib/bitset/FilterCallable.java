@@ -0,0 +1,225 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.Arrays;
+
+import org.apache.lucene.contrib.bitset.ops.DoubleComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.LongComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.OverlapSimilarity;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Scores the bitsets in [fromIndex, toIndex) against a query, keeping the indices (and the scores, if asked for) of those reaching a threshold in arrays grown as needed, so that only the matches are ever stored
+ *
+ * @param <S> the type of the array of scores, long[] or double[]
+ */
+abstract class FilterCallable<S> extends AbstractOpCallable<Matches<S>> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    protected final ImmutableBitSet query;
+    protected final boolean withScores;
+    private int[] indices;
+    private int count;
+
+    protected FilterCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet query, final boolean withScores) {
+        super(bs, fromIndex, toIndex, finalBitsetSize);
+        this.query = query;
+        this.withScores = withScores;
+    }
+
+    @Override
+    public Matches<S> call() {
+        indices = new int[INITIAL_CAPACITY];
+        count = 0;
+        for (int i = fromIndex; i < toIndex; i++) {
+            if (matches(i)) {
+                if (count == indices.length) {
+                    indices = Arrays.copyOf(indices, 2 * count);
+                }
+                indices[count++] = i;
+            }
+        }
+        return new Matches<S>(Arrays.copyOf(indices, count), withScores ? scores(count) : null);
+    }
+
+    /**
+     * @return the number of matches so far
+     */
+    protected final int matchCount() {
+        return count;
+    }
+
+    /**
+     * Scores bs[i], keeping its score if it matches and scores are asked for
+     *
+     * @return true if bs[i] reaches the threshold
+     */
+    protected abstract boolean matches(int i);
+
+    /**
+     * @return the scores kept so far, trimmed to the given number of matches
+     */
+    protected abstract S scores(int matches);
+
+    /**
+     * @return a callable filtering the bitsets in [fromIndex, toIndex) the same way
+     */
+    abstract FilterCallable<S> slice(int fromIndex, int toIndex);
+
+    /**
+     * @param query a bitset
+     * @return at index b, the cardinality of the query from word b * {@link BitSetWords#BLOCK_WORDS} on, an upper bound of what is left to count of an intersection with it
+     */
+    static long[] suffixCounts(final ImmutableBitSet query) {
+        long[] words = BitSetWords.words(query);
+        int length = BitSetWords.numWords(query);
+        int blocks = (length + BitSetWords.BLOCK_WORDS - 1) / BitSetWords.BLOCK_WORDS;
+        long[] suffix = new long[blocks + 1];
+        for (int b = blocks - 1; b >= 0; b--) {
+            long blockCount = 0L;
+            for (int w = b * BitSetWords.BLOCK_WORDS; w < Math.min(length, (b + 1) * BitSetWords.BLOCK_WORDS); w++) {
+                blockCount += Long.bitCount(words[w]);
+            }
+            suffix[b] = suffix[b + 1] + blockCount;
+        }
+        return suffix;
+    }
+
+    /**
+     * Filters on a {@link LongComparisonOp}. Given upper bounds of the scores, a bitset whose bound is below the threshold is not scored; given the {@link #suffixCounts(ImmutableBitSet)} of the query, the scorer is an intersection count, computed a block of words at a time and given up as soon as the rest of the query cannot make up for the missing count
+     */
+    static final class Longs extends FilterCallable<long[]> {
+        private final long threshold;
+        private final LongComparisonOp scorer;
+        private final long[] bounds;
+        private final long[] suffixCounts;
+        private long[] scores;
+
+        Longs(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet query, final long threshold, final LongComparisonOp scorer, final boolean withScores, final long[] bounds, final long[] suffixCounts) {
+            super(bs, fromIndex, toIndex, finalBitsetSize, query, withScores);
+            this.threshold = threshold;
+            this.scorer = scorer;
+            this.bounds = bounds;
+            this.suffixCounts = suffixCounts;
+        }
+
+        @Override
+        protected boolean matches(final int i) {
+            if (bounds != null && bounds[i] < threshold) {
+                return false;
+            }
+            long score = suffixCounts == null ? scorer.compute(bs[i], query) : intersectionCount(bs[i]);
+            if (score < threshold) {
+                return false;
+            }
+            if (withScores) {
+                scores = scores == null ? new long[INITIAL_CAPACITY] : scores;
+                int matches = matchCount();
+                if (matches == scores.length) {
+                    scores = Arrays.copyOf(scores, 2 * matches);
+                }
+                scores[matches] = score;
+            }
+            return true;
+        }
+
+        /**
+         * @return the intersection count of the given bitset with the query, or a lower count, below the threshold, if it cannot be reached
+         */
+        private long intersectionCount(final ImmutableBitSet target) {
+            long[] words = BitSetWords.words(target);
+            long[] queryWords = BitSetWords.words(query);
+            int length = Math.min(BitSetWords.numWords(target), BitSetWords.numWords(query));
+            long count = 0L;
+            for (int from = 0, block = 0; from < length; from += BitSetWords.BLOCK_WORDS, block++) {
+                if (count + suffixCounts[block] < threshold) {
+                    return count;
+                }
+                int to = Math.min(length, from + BitSetWords.BLOCK_WORDS);
+                for (int w = from; w < to; w++) {
+                    count += Long.bitCount(words[w] & queryWords[w]);
+                }
+            }
+            return count;
+        }
+
+        @Override
+        protected long[] scores(final int matches) {
+            return scores == null ? new long[0] : Arrays.copyOf(scores, matches);
+        }
+
+        @Override
+        FilterCallable<long[]> slice(final int fromIndex, final int toIndex) {
+            return new Longs(bs, fromIndex, toIndex, finalBitsetSize, query, threshold, scorer, withScores, bounds, suffixCounts);
+        }
+    }
+
+    /**
+     * Filters on a {@link DoubleComparisonOp}, for example a similarity; an {@link OverlapSimilarity} is computed by {@link Overlaps}. Given the cardinalities of the bitsets, a bitset is not scored when even sharing all the bits of the smaller of it and the query would not reach the threshold, min / max of their cardinalities for {@link org.apache.lucene.contrib.bitset.ops.Jaccard}
+     */
+    static final class Doubles extends FilterCallable<double[]> {
+        private final double threshold;
+        private final DoubleComparisonOp scorer;
+        private final long[] cardinalities;
+        private final long queryCount;
+        private double[] scores;
+
+        Doubles(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet query, final double threshold, final DoubleComparisonOp scorer, final boolean withScores, final long[] cardinalities) {
+            super(bs, fromIndex, toIndex, finalBitsetSize, query, withScores);
+            this.threshold = threshold;
+            this.scorer = scorer;
+            this.cardinalities = cardinalities;
+            this.queryCount = scorer instanceof OverlapSimilarity ? query.cardinality() : -1L;
+        }
+
+        @Override
+        protected boolean matches(final int i) {
+            if (cardinalities != null && ((OverlapSimilarity) scorer).similarity(Math.min(cardinalities[i], queryCount), cardinalities[i], queryCount) < threshold) {
+                return false;
+            }
+            double score = queryCount < 0L ? scorer.compute(bs[i], query) : Overlaps.similarity((OverlapSimilarity) scorer, bs[i], query, queryCount);
+            if (!(score >= threshold)) {
+                return false;
+            }
+            if (withScores) {
+                scores = scores == null ? new double[INITIAL_CAPACITY] : scores;
+                int matches = matchCount();
+                if (matches == scores.length) {
+                    scores = Arrays.copyOf(scores, 2 * matches);
+                }
+                scores[matches] = score;
+            }
+            return true;
+        }
+
+        @Override
+        protected double[] scores(final int matches) {
+            return scores == null ? new double[0] : Arrays.copyOf(scores, matches);
+        }
+
+        @Override
+        FilterCallable<double[]> slice(final int fromIndex, final int toIndex) {
+            return new Doubles(bs, fromIndex, toIndex, finalBitsetSize, query, threshold, scorer, withScores, cardinalities);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.lucene.contrib.bitset.ops.AssociativeOp;
+import org.apache.lucene.contrib.bitset.ops.WordwiseOp;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+
+/**
+ * Reduces the bitsets in [fromIndex, toIndex) by halving the range until it is smaller than the leaf size, then merging the two halves' partial results on the way back up
+ */
+class ForkJoinReduceTask extends RecursiveTask<MutableBitSet> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ImmutableBitSet[] bs;
+    private final int fromIndex;
+    private final int toIndex;
+    private final int finalBitsetSize;
+    private final int leafSize;
+    private final AssociativeOp operation;
+    private final CancellationToken token;
+    private final ShortCircuit shortCircuit;
+
+    public ForkJoinReduceTask(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final int leafSize, final AssociativeOp operation, final CancellationToken token, final ShortCircuit shortCircuit) {
+        this.bs = bs;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.finalBitsetSize = finalBitsetSize;
+        this.leafSize = leafSize;
+        this.operation = operation;
+        this.token = token;
+        this.shortCircuit = shortCircuit;
+    }
+
+    @Override
+    protected MutableBitSet compute() {
+        if (toIndex - fromIndex <= leafSize) {
+            return new AssociativeOpCallable(bs, fromIndex, toIndex, finalBitsetSize, operation, token, shortCircuit).call();
+        }
+
+        int middle = (fromIndex + toIndex) >>> 1;
+        ForkJoinReduceTask left = new ForkJoinReduceTask(bs, fromIndex, middle, finalBitsetSize, leafSize, operation, token, shortCircuit);
+        ForkJoinReduceTask right = new ForkJoinReduceTask(bs, middle, toIndex, finalBitsetSize, leafSize, operation, token, shortCircuit);
+        right.fork();
+        MutableBitSet accumulator = left.compute();
+        MutableBitSet rightResult = right.join();
+        if (shortCircuit != null && shortCircuit.isAnnihilated()) {
+            // the halves may have stopped before the end of their range, but the result is known anyway
+            return shortCircuit.result();
+        }
+        return merge(accumulator, rightResult);
+    }
+
+    /**
+     * Folds the words of the right half's result straight into the left one when the operation is wordwise, rather than copying it into an immutable bitset first. When the right result is the longer of the two, the left one is folded into it instead, if the operation is commutative
+     */
+    private MutableBitSet merge(final MutableBitSet left, final MutableBitSet right) {
+        if (operation instanceof WordwiseOp) {
+            WordwiseOp wordwise = (WordwiseOp) operation;
+            if (BitSetWords.numWords(right) <= BitSetWords.numWords(left)) {
+                fold(wordwise, left, right);
+                return left;
+            }
+            if (Algebra.isCommutative(operation)) {
+                fold(wordwise, right, left);
+                return right;
+            }
+        }
+        operation.compute(left, right.immutableCopy());
+        return left;
+    }
+
+    private static void fold(final WordwiseOp operation, final MutableBitSet accumulator, final MutableBitSet bitset) {
+        WordFold fold = WordFold.of(operation);
+        int length = BitSetWords.numWords(bitset);
+        fold.fold(operation, BitSetWords.words(accumulator), BitSetWords.words(bitset), 0, length);
+        fold.foldZeros(operation, BitSetWords.words(accumulator), length, BitSetWords.numWords(accumulator));
+    }
+
+    /**
+     * Computes a leaf size giving each worker of the pool a few leaves to steal from
+     *
+     * @param numberOfBitsets the size of the input array
+     * @param parallelism     the parallelism of the pool
+     * @return the maximum number of bitsets reduced by a single leaf task
+     */
+    static int leafSize(final int numberOfBitsets, final int parallelism) {
+        return Math.max(1, numberOfBitsets / (Math.max(1, parallelism) * 4));
+    }
+}
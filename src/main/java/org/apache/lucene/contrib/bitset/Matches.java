@@ -0,0 +1,82 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.lang.reflect.Array;
+import java.util.List;
+
+/**
+ * The bitsets whose score reaches a threshold, by increasing index in the input array, with their scores if they were asked for
+ *
+ * @param <S> the type of the array of scores, long[] or double[]
+ */
+public final class Matches<S> {
+
+    private final int[] indices;
+    private final S scores;
+
+    Matches(final int[] indices, final S scores) {
+        this.indices = indices;
+        this.scores = scores;
+    }
+
+    /**
+     * @return the number of bitsets found
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * @return the indices of the bitsets found in the input array, in increasing order; not a copy
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    /**
+     * @return the scores of the bitsets found, in the same order as {@link #getIndices()}; not a copy, null if the scores were not kept
+     */
+    public S getScores() {
+        return scores;
+    }
+
+    /**
+     * @return the matches of consecutive slices of the input array, one after the other
+     */
+    @SuppressWarnings({"unchecked"})
+    static <S> Matches<S> concat(final List<Matches<S>> slices) {
+        int length = 0;
+        for (Matches<S> slice : slices) {
+            length += slice.size();
+        }
+        int[] indices = new int[length];
+        S scores = slices.get(0).scores == null ? null : (S) Array.newInstance(slices.get(0).scores.getClass().getComponentType(), length);
+        int lastIndex = 0;
+        for (Matches<S> slice : slices) {
+            System.arraycopy(slice.indices, 0, indices, lastIndex, slice.size());
+            if (scores != null) {
+                System.arraycopy(slice.scores, 0, scores, lastIndex, slice.size());
+            }
+            lastIndex += slice.size();
+        }
+        return new Matches<S>(indices, scores);
+    }
+}
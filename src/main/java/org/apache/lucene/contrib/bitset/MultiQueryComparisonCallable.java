@@ -0,0 +1,90 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import org.apache.lucene.contrib.bitset.ops.WordwiseComparisonOp;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Compares the bitsets in [fromIndex, toIndex) with many queries, a block of words at a time: the block of every query stays hot in the cache while the targets stream through it, each block of a target read once and compared with all the queries.<br/>
+ * The count of bs[N] against queries[Q] is summed into counts[Q][N]
+ */
+class MultiQueryComparisonCallable extends AbstractOpCallable<Void> {
+
+    private final ImmutableBitSet[] queries;
+    private final int wordsPerBlock;
+    private final WordwiseComparisonOp<?> operation;
+    private final long[][] counts;
+
+    public MultiQueryComparisonCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet[] queries, final int wordsPerBlock, final WordwiseComparisonOp<?> operation, final long[][] counts) {
+        super(bs, fromIndex, toIndex, finalBitsetSize);
+        this.queries = queries;
+        this.wordsPerBlock = wordsPerBlock;
+        this.operation = operation;
+        this.counts = counts;
+    }
+
+    @Override
+    public Void call() {
+        long[][] queryWords = new long[queries.length][];
+        int[] queryLengths = new int[queries.length];
+        int maxLength = 0;
+        for (int q = 0; q < queries.length; q++) {
+            queryWords[q] = BitSetWords.words(queries[q]);
+            queryLengths[q] = BitSetWords.numWords(queries[q]);
+            maxLength = Math.max(maxLength, queryLengths[q]);
+        }
+        for (int i = fromIndex; i < toIndex; i++) {
+            maxLength = Math.max(maxLength, BitSetWords.numWords(bs[i]));
+        }
+
+        for (int blockStart = 0; blockStart < maxLength; blockStart += wordsPerBlock) {
+            int blockEnd = Math.min(maxLength, blockStart + wordsPerBlock);
+            for (int i = fromIndex; i < toIndex; i++) {
+                long[] words = BitSetWords.words(bs[i]);
+                int length = BitSetWords.numWords(bs[i]);
+                for (int q = 0; q < queries.length; q++) {
+                    counts[q][i] += count(words, length, queryWords[q], queryLengths[q], blockStart, blockEnd);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return a callable comparing the bitsets in [fromIndex, toIndex) into the same matrix
+     */
+    MultiQueryComparisonCallable slice(final int fromIndex, final int toIndex) {
+        return new MultiQueryComparisonCallable(bs, fromIndex, toIndex, finalBitsetSize, queries, wordsPerBlock, operation, counts);
+    }
+
+    private long count(final long[] words, final int length, final long[] queryWords, final int queryLength, final int from, final int to) {
+        int shared = Math.max(from, Math.min(to, Math.min(length, queryLength)));
+        long count = 0L;
+        for (int w = from; w < shared; w++) {
+            count += operation.count(words[w], queryWords[w]);
+        }
+        for (int w = shared; w < to; w++) {
+            count += operation.count(w < length ? words[w] : 0L, w < queryLength ? queryWords[w] : 0L);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import org.apache.lucene.contrib.bitset.ops.OverlapSimilarity;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Computes an {@link OverlapSimilarity} in a single pass over the words of the target, counting its bits and those it shares with the bitset used as comparison at once. The cardinality of the latter is the same for every target, so it is counted once by the caller
+ */
+final class Overlaps {
+
+    private Overlaps() {
+        // empty
+    }
+
+    /**
+     * @param similarity     the similarity to compute
+     * @param target         the Nth bitset to compare
+     * @param toCompare      the bitset used as comparison
+     * @param toCompareCount the cardinality of the bitset used as comparison
+     * @return the similarity of the given bitsets
+     */
+    static double similarity(final OverlapSimilarity similarity, final ImmutableBitSet target, final ImmutableBitSet toCompare, final long toCompareCount) {
+        long[] words = BitSetWords.words(target);
+        long[] compareWords = BitSetWords.words(toCompare);
+        int length = BitSetWords.numWords(target);
+        int shared = Math.min(length, BitSetWords.numWords(toCompare));
+        long intersection = 0L;
+        long targetCount = 0L;
+        for (int w = 0; w < shared; w++) {
+            long word = words[w];
+            intersection += Long.bitCount(word & compareWords[w]);
+            targetCount += Long.bitCount(word);
+        }
+        for (int w = shared; w < length; w++) {
+            targetCount += Long.bitCount(words[w]);
+        }
+        return similarity.similarity(intersection, targetCount, toCompareCount);
+    }
+}
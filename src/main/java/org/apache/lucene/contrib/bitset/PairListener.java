@@ -0,0 +1,34 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+/**
+ * Receives the pairs found by {@link BitsetOperationsExecutor#similarityJoin(org.dishevelled.bitset.ImmutableBitSet[], double, PairListener)} as soon as they are found, so that they need not be held in memory.<br/>
+ * It is called from the threads of the executor, possibly concurrently, and must be thread safe
+ */
+public interface PairListener {
+
+  /**
+   * @param first      the index of a bitset in the input array
+   * @param second     the index of the other bitset, greater than first
+   * @param similarity the similarity of the two bitsets
+   */
+  void pair(int first, int second, double similarity);
+}
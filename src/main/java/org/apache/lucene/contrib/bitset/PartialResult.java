@@ -0,0 +1,64 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * The result of an operation run with a {@link CancellationToken}, possibly incomplete if the token stopped it.<br/><br/>
+ * An incomplete associative result only accounts for part of the input bitsets; an incomplete comparison result has null elements for the bitsets that were not compared, and is null if none was
+ *
+ * @param <R> the type of the result
+ */
+public final class PartialResult<R> {
+
+    private final R result;
+    private final boolean complete;
+
+    PartialResult(final R result, final boolean complete) {
+        this.result = result;
+        this.complete = complete;
+    }
+
+    /**
+     * @return the result, possibly incomplete
+     */
+    public R getResult() {
+        return result;
+    }
+
+    /**
+     * @return true if the operation ran to completion
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the result, if complete
+     * @throws CancellationException if the operation was stopped before completing
+     */
+    public R getOrThrow() {
+        if (!complete) {
+            throw new CancellationException("bitset operation stopped before completing");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import org.apache.lucene.contrib.bitset.ops.DoubleComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.IntComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.LongComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.OverlapSimilarity;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Compares the bitsets in [fromIndex, toIndex) writing each result at its own index of an array supplied by the caller, so slices share the array without any merge and nothing is allocated per bitset
+ */
+abstract class PrimitiveComparisonCallable extends AbstractOpCallable<Void> {
+
+    protected final ImmutableBitSet toCompare;
+
+    protected PrimitiveComparisonCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet toCompare, final CancellationToken token) {
+        super(bs, fromIndex, toIndex, finalBitsetSize, token);
+        this.toCompare = toCompare;
+    }
+
+    @Override
+    public Void call() {
+        for (int i = fromIndex; i < toIndex; i++) {
+            if (shouldStop(i - fromIndex)) {
+                break;
+            }
+            compare(i);
+        }
+        return null;
+    }
+
+    /**
+     * Compares bs[i] and stores the result at index i
+     */
+    protected abstract void compare(int i);
+
+    /**
+     * @return a callable comparing the bitsets in [fromIndex, toIndex) into the same array
+     */
+    abstract PrimitiveComparisonCallable slice(int fromIndex, int toIndex);
+
+    static final class Longs extends PrimitiveComparisonCallable {
+        private final LongComparisonOp operation;
+        private final long[] result;
+
+        Longs(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet toCompare, final LongComparisonOp operation, final long[] result, final CancellationToken token) {
+            super(bs, fromIndex, toIndex, finalBitsetSize, toCompare, token);
+            this.operation = operation;
+            this.result = result;
+        }
+
+        @Override
+        protected void compare(final int i) {
+            result[i] = operation.compute(bs[i], toCompare);
+        }
+
+        @Override
+        PrimitiveComparisonCallable slice(final int fromIndex, final int toIndex) {
+            return new Longs(bs, fromIndex, toIndex, finalBitsetSize, toCompare, operation, result, token);
+        }
+    }
+
+    static final class Ints extends PrimitiveComparisonCallable {
+        private final IntComparisonOp operation;
+        private final int[] result;
+
+        Ints(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet toCompare, final IntComparisonOp operation, final int[] result, final CancellationToken token) {
+            super(bs, fromIndex, toIndex, finalBitsetSize, toCompare, token);
+            this.operation = operation;
+            this.result = result;
+        }
+
+        @Override
+        protected void compare(final int i) {
+            result[i] = operation.compute(bs[i], toCompare);
+        }
+
+        @Override
+        PrimitiveComparisonCallable slice(final int fromIndex, final int toIndex) {
+            return new Ints(bs, fromIndex, toIndex, finalBitsetSize, toCompare, operation, result, token);
+        }
+    }
+
+    static final class Doubles extends PrimitiveComparisonCallable {
+        private final DoubleComparisonOp operation;
+        private final double[] result;
+        private final long toCompareCount;
+
+        Doubles(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet toCompare, final DoubleComparisonOp operation, final double[] result, final CancellationToken token) {
+            super(bs, fromIndex, toIndex, finalBitsetSize, toCompare, token);
+            this.operation = operation;
+            this.result = result;
+            this.toCompareCount = operation instanceof OverlapSimilarity ? toCompare.cardinality() : -1L;
+        }
+
+        @Override
+        protected void compare(final int i) {
+            result[i] = toCompareCount < 0L ? operation.compute(bs[i], toCompare) : Overlaps.similarity((OverlapSimilarity) operation, bs[i], toCompare, toCompareCount);
+        }
+
+        @Override
+        PrimitiveComparisonCallable slice(final int fromIndex, final int toIndex) {
+            return new Doubles(bs, fromIndex, toIndex, finalBitsetSize, toCompare, operation, result, token);
+        }
+    }
+}
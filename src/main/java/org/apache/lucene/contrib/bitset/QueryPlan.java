@@ -0,0 +1,210 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * The plan of an {@link Expression}, made by {@link BitsetOperationsExecutor#plan(Expression, int)}: the rewritten expression, the estimates it was chosen on and, once executed by {@link BitsetOperationsExecutor#perform(QueryPlan)}, the actual figures of its last execution.<br/>
+ * {@link #explain()} shows both side by side, node by node
+ */
+public final class QueryPlan {
+
+    private final Expression original;
+    private final Expression planned;
+    private final int finalBitsetSize;
+    private final int nodeCount;
+    private final Map<ImmutableBitSet, Double> densities;
+    private final Estimate[] estimates;
+    private final long countedWords;
+    private volatile Execution lastExecution;
+
+    QueryPlan(final Expression original, final Expression planned, final int finalBitsetSize, final int nodeCount, final Map<ImmutableBitSet, Double> densities, final Estimate[] estimates, final long countedWords) {
+        this.original = original;
+        this.planned = planned;
+        this.finalBitsetSize = finalBitsetSize;
+        this.nodeCount = nodeCount;
+        this.densities = densities;
+        this.estimates = estimates;
+        this.countedWords = countedWords;
+    }
+
+    /**
+     * @return the expression this plan was made for
+     */
+    public Expression getOriginalExpression() {
+        return original;
+    }
+
+    /**
+     * @return the rewritten expression, evaluated by {@link BitsetOperationsExecutor#perform(QueryPlan)}
+     */
+    public Expression getPlannedExpression() {
+        return planned;
+    }
+
+    /**
+     * @return the final bitset size the plan was made for
+     */
+    public int getFinalBitsetSize() {
+        return finalBitsetSize;
+    }
+
+    /**
+     * @return the estimated cardinality of the result, assuming independent leaves
+     */
+    public long getEstimatedCardinality() {
+        return Math.round(density(planned) * finalBitsetSize);
+    }
+
+    /**
+     * @return the estimated cost of the evaluation, in words folded
+     */
+    public double getEstimatedCost() {
+        return planned instanceof Expression.Node ? estimates[((Expression.Node) planned).id()].cost : 0.0d;
+    }
+
+    /**
+     * @return the cardinality of the result of the last execution, -1 if the plan was never executed
+     */
+    public long getActualCardinality() {
+        Execution execution = lastExecution;
+        return execution == null ? -1L : execution.cardinality;
+    }
+
+    /**
+     * @return the wall clock time of the last execution in nanoseconds, -1 if the plan was never executed
+     */
+    public long getElapsedNanos() {
+        Execution execution = lastExecution;
+        return execution == null ? -1L : execution.elapsedNanos;
+    }
+
+    /**
+     * @return a description of the plan, one node per line, with the kernel chosen, the estimated cardinality and cost and, if the plan was executed, the actual cardinality and number of blocks of words each node evaluated
+     */
+    public String explain() {
+        Execution execution = lastExecution;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "plan of %s over %d bits (%d words), estimated cost %.0f words%n", original, finalBitsetSize, BitSetWords.bits2words(finalBitsetSize), getEstimatedCost()));
+        if (countedWords > 0L) {
+            sb.append(String.format(Locale.ROOT, "counted leaves without a known cardinality, %d words%n", countedWords));
+        }
+        explain(planned, 0, execution, sb);
+        if (execution == null) {
+            sb.append(String.format(Locale.ROOT, "not executed%n"));
+        } else {
+            sb.append(String.format(Locale.ROOT, "executed in %d ns, cardinality %d%n", execution.elapsedNanos, execution.cardinality));
+        }
+        return sb.toString();
+    }
+
+    private void explain(final Expression expression, final int depth, final Execution execution, final StringBuilder sb) {
+        for (int i = 0; i < depth; i++) {
+            sb.append("  ");
+        }
+        long estimatedCardinality = Math.round(density(expression) * finalBitsetSize);
+        if (expression instanceof Expression.Leaf) {
+            sb.append(String.format(Locale.ROOT, "%s est.cardinality=%d%n", expression, estimatedCardinality));
+            return;
+        }
+        Expression.Node node = (Expression.Node) expression;
+        Estimate estimate = estimates[node.id()];
+        sb.append(String.format(Locale.ROOT, "%s %s est.cardinality=%d est.cost=%.0f", node.operation().getClass().getSimpleName(), estimate.sparse ? "sparse" : "dense", estimatedCardinality, estimate.cost));
+        if (execution != null) {
+            sb.append(String.format(Locale.ROOT, " actual.cardinality=%d actual.blocks=%d/%d", execution.bits.get(node.id()), execution.blocks.get(node.id()), execution.blocks.get(0)));
+        }
+        sb.append(String.format(Locale.ROOT, "%n"));
+        for (Expression operand : node.operands()) {
+            explain(operand, depth + 1, execution, sb);
+        }
+    }
+
+    private double density(final Expression expression) {
+        if (expression instanceof Expression.Leaf) {
+            return densities.get(((Expression.Leaf) expression).bitset());
+        }
+        return estimates[((Expression.Node) expression).id()].density;
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+
+    /**
+     * Starts recording an execution of this plan
+     */
+    Execution start() {
+        return new Execution(nodeCount);
+    }
+
+    /**
+     * Records the given execution as the last one
+     */
+    void finish(final Execution execution, final long cardinality, final long elapsedNanos) {
+        execution.cardinality = cardinality;
+        execution.elapsedNanos = elapsedNanos;
+        lastExecution = execution;
+    }
+
+    /**
+     * The estimates of a node
+     */
+    static final class Estimate {
+        private final double density;
+        private final double cost;
+        private final boolean sparse;
+
+        Estimate(final double density, final double cost, final boolean sparse) {
+            this.density = density;
+            this.cost = cost;
+            this.sparse = sparse;
+        }
+    }
+
+    /**
+     * The actual figures of an execution, by node: the number of blocks of words evaluated and the number of bits they held
+     */
+    static final class Execution {
+        private final AtomicLongArray blocks;
+        private final AtomicLongArray bits;
+        private long cardinality;
+        private long elapsedNanos;
+
+        private Execution(final int nodeCount) {
+            this.blocks = new AtomicLongArray(nodeCount);
+            this.bits = new AtomicLongArray(nodeCount);
+        }
+
+        void record(final int id, final long[] block, final int length) {
+            long count = 0L;
+            for (int w = 0; w < length; w++) {
+                count += Long.bitCount(block[w]);
+            }
+            blocks.incrementAndGet(id);
+            bits.addAndGet(id, count);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.contrib.bitset.ops.AND;
+import org.apache.lucene.contrib.bitset.ops.NOT;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.apache.lucene.contrib.bitset.ops.WordwiseOp;
+import org.apache.lucene.contrib.bitset.ops.XOR;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Rewrites an {@link Expression} into a {@link QueryPlan} using the density of its leaves, assuming leaves are independent:<br/>
+ * nested ANDs, ORs and XORs are flattened so that all their operands are ordered together; exclusions nested in a conjunction are hoisted above it, so they only apply where the conjunction is not empty;
+ * conjunctions are ordered most selective first and disjunctions densest first, so that blocks reach the annihilator of the node as early as possible; finally each conjunction whose most selective operand is a leaf picks between folding words and iterating the set bits of that leaf.<br/><br/>
+ * Costs are in words folded, the cost of probing one bit being {@link #PROBE_COST} words
+ */
+final class QueryPlanner {
+
+    /**
+     * The cost of probing a single bit of a leaf, in words folded: a cache miss is worth several words streamed through the cache
+     */
+    static final double PROBE_COST = 4.0d;
+
+    private static final int BITS_PER_BLOCK = BitSetWords.BLOCK_WORDS * 64;
+
+    private final int finalBitsetSize;
+    private final int words;
+    private final Map<ImmutableBitSet, Double> densities = new IdentityHashMap<ImmutableBitSet, Double>();
+    private long countedWords;
+
+    private QueryPlanner(final int finalBitsetSize) {
+        this.finalBitsetSize = finalBitsetSize;
+        this.words = BitSetWords.bits2words(finalBitsetSize);
+    }
+
+    /**
+     * @param expression      the expression to plan
+     * @param finalBitsetSize the final bitset size
+     * @return the plan of the given expression
+     */
+    static QueryPlan plan(final Expression expression, final int finalBitsetSize) {
+        QueryPlanner planner = new QueryPlanner(finalBitsetSize);
+        Step root = planner.plan(expression);
+        List<Step> nodes = new ArrayList<Step>();
+        Expression planned = root.build(nodes);
+        return new QueryPlan(expression, planned, finalBitsetSize, nodes.size(), planner.densities, estimates(nodes), planner.countedWords);
+    }
+
+    private static QueryPlan.Estimate[] estimates(final List<Step> nodes) {
+        QueryPlan.Estimate[] estimates = new QueryPlan.Estimate[nodes.size()];
+        for (int i = 0; i < estimates.length; i++) {
+            Step step = nodes.get(i);
+            estimates[i] = new QueryPlan.Estimate(step.density, step.cost, step.sparse);
+        }
+        return estimates;
+    }
+
+    private Step plan(final Expression expression) {
+        if (expression instanceof Expression.Leaf) {
+            Expression.Leaf leaf = (Expression.Leaf) expression;
+            return new Step(leaf, density(leaf));
+        }
+        Expression.Node node = (Expression.Node) expression;
+        List<Step> operands = new ArrayList<Step>(node.operands().length);
+        for (Expression operand : node.operands()) {
+            operands.add(plan(operand));
+        }
+        return combine(node.operation(), operands);
+    }
+
+    private double density(final Expression.Leaf leaf) {
+        Double density = densities.get(leaf.bitset());
+        if (density == null) {
+            long cardinality = leaf.cardinality();
+            if (cardinality == Expression.UNKNOWN) {
+                cardinality = leaf.bitset().cardinality();
+                countedWords += BitSetWords.numWords(leaf.bitset());
+            }
+            density = finalBitsetSize == 0 ? 0.0d : Math.min(1.0d, (double) cardinality / finalBitsetSize);
+            densities.put(leaf.bitset(), density);
+        }
+        return density;
+    }
+
+    private Step combine(final WordwiseOp operation, final List<Step> operands) {
+        if (operation instanceof AND) {
+            return conjunction(operation, operands);
+        }
+        if (operation instanceof OR || operation instanceof XOR) {
+            List<Step> flattened = flatten(operation, operands);
+            if (operation instanceof OR) {
+                Collections.sort(flattened, DENSEST_FIRST);
+            }
+            return estimate(new Step(operation, flattened));
+        }
+        if (operation instanceof NOT) {
+            List<Step> subtrahends = new ArrayList<Step>(operands.subList(1, operands.size()));
+            Collections.sort(subtrahends, DENSEST_FIRST);
+            subtrahends.add(0, operands.get(0));
+            return estimate(new Step(operation, subtrahends));
+        }
+        return estimate(new Step(operation, operands));
+    }
+
+    private Step conjunction(final WordwiseOp operation, final List<Step> operands) {
+        List<Step> conjuncts = new ArrayList<Step>();
+        List<Step> exclusions = new ArrayList<Step>();
+        // hoist exclusions, a AND (b AND NOT c) == (a AND b) AND NOT c, flattening the bases they leave
+        List<Step> pending = flatten(operation, operands);
+        while (!pending.isEmpty()) {
+            Step step = pending.remove(pending.size() - 1);
+            if (step.operation instanceof NOT) {
+                exclusions.addAll(step.operands.subList(1, step.operands.size()));
+                pending.addAll(flatten(operation, Collections.singletonList(step.operands.get(0))));
+            } else {
+                conjuncts.add(step);
+            }
+        }
+        Collections.sort(conjuncts, SPARSEST_FIRST);
+        Step conjunction = conjuncts.size() == 1 ? conjuncts.get(0) : estimate(new Step(operation, conjuncts));
+        if (exclusions.isEmpty()) {
+            return conjunction;
+        }
+        exclusions.add(0, conjunction);
+        return combine(new NOT(), exclusions);
+    }
+
+    private static List<Step> flatten(final WordwiseOp operation, final List<Step> operands) {
+        List<Step> flattened = new ArrayList<Step>(operands.size());
+        for (Step operand : operands) {
+            if (operand.operation != null && operand.operation.getClass() == operation.getClass()) {
+                flattened.addAll(operand.operands);
+            } else {
+                flattened.add(operand);
+            }
+        }
+        return flattened;
+    }
+
+    /**
+     * Estimates the density and the cost of a node, choosing its kernel
+     */
+    private Step estimate(final Step step) {
+        List<Step> operands = step.operands;
+        WordwiseOp operation = step.operation;
+
+        double density = operands.get(0).density;
+        double dense = operands.get(0).cost + words;
+        for (int i = 1; i < operands.size(); i++) {
+            Step operand = operands.get(i);
+            dense += live(operation, density) * (operand.cost + words);
+            density = density(operation, density, operand.density);
+        }
+        step.density = density;
+        step.cost = dense;
+
+        if (operation instanceof AND && operands.get(0).leaf != null) {
+            double probes = 0.0d;
+            for (int i = 1; i < operands.size(); i++) {
+                probes += PROBE_COST * operands.get(i).leafCount();
+            }
+            double sparse = words + operands.get(0).density * finalBitsetSize * probes;
+            if (sparse < dense) {
+                step.sparse = true;
+                step.cost = sparse;
+            }
+        }
+        return step;
+    }
+
+    /**
+     * @return the probability that a block of the accumulator, with the given density, is not yet the annihilator of the operation
+     */
+    private static double live(final WordwiseOp operation, final double density) {
+        if (operation instanceof AND || operation instanceof NOT) {
+            return 1.0d - Math.pow(1.0d - density, BITS_PER_BLOCK);
+        }
+        if (operation instanceof OR) {
+            return 1.0d - Math.pow(density, BITS_PER_BLOCK);
+        }
+        return 1.0d;
+    }
+
+    private static double density(final WordwiseOp operation, final double accumulator, final double operand) {
+        if (operation instanceof AND) {
+            return accumulator * operand;
+        }
+        if (operation instanceof OR) {
+            return 1.0d - (1.0d - accumulator) * (1.0d - operand);
+        }
+        if (operation instanceof XOR) {
+            return accumulator * (1.0d - operand) + operand * (1.0d - accumulator);
+        }
+        if (operation instanceof NOT) {
+            return accumulator * (1.0d - operand);
+        }
+        return Math.max(accumulator, operand);
+    }
+
+    private static final Comparator<Step> SPARSEST_FIRST = new Comparator<Step>() {
+        @Override
+        public int compare(final Step s1, final Step s2) {
+            return Double.compare(s1.density, s2.density);
+        }
+    };
+
+    private static final Comparator<Step> DENSEST_FIRST = Collections.reverseOrder(SPARSEST_FIRST);
+
+    /**
+     * A leaf or a node being planned
+     */
+    private static final class Step {
+        private final Expression.Leaf leaf;
+        private final WordwiseOp operation;
+        private final List<Step> operands;
+        private double density;
+        private double cost;
+        private boolean sparse;
+
+        private Step(final Expression.Leaf leaf, final double density) {
+            this.leaf = leaf;
+            this.operation = null;
+            this.operands = null;
+            this.density = density;
+        }
+
+        private Step(final WordwiseOp operation, final List<Step> operands) {
+            this.leaf = null;
+            this.operation = operation;
+            this.operands = operands;
+        }
+
+        private int leafCount() {
+            if (leaf != null) {
+                return 1;
+            }
+            int leaves = 0;
+            for (Step operand : operands) {
+                leaves += operand.leafCount();
+            }
+            return leaves;
+        }
+
+        /**
+         * Builds the planned expression, numbering nodes in pre-order
+         */
+        private Expression build(final List<Step> nodes) {
+            if (leaf != null) {
+                return leaf;
+            }
+            int id = nodes.size();
+            nodes.add(this);
+            Expression[] built = new Expression[operands.size()];
+            for (int i = 0; i < built.length; i++) {
+                built[i] = operands.get(i).build(nodes);
+            }
+            return new Expression.Node(operation, built, sparse, id);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import org.apache.lucene.contrib.bitset.ops.Element;
+
+import org.dishevelled.bitset.AbstractBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+
+/**
+ * Shared by the tasks of an operation with an annihilator (empty for AND and AND-NOT, full for OR): as soon as one of them finds its accumulator annihilated the whole result is known, so every other task and the final merge can stop.<br/>
+ * These operations only clear, or only set, bits, so annihilation is tracked with a cursor on the first word not yet annihilated that only moves forward: checking after every bitset costs a single pass over the words overall
+ */
+final class ShortCircuit {
+
+    private final Element annihilator;
+    private final int finalBitsetSize;
+    private final long fill;
+    private final int lastWord;
+    private final long lastMask;
+    private volatile boolean annihilated;
+
+    /**
+     * @param annihilator     the annihilator of the operation, {@link Element#EMPTY} or {@link Element#FULL}
+     * @param finalBitsetSize the final bitset size
+     */
+    ShortCircuit(final Element annihilator, final int finalBitsetSize) {
+        this.annihilator = annihilator;
+        this.finalBitsetSize = finalBitsetSize;
+        this.fill = annihilator == Element.FULL ? -1L : 0L;
+        this.lastWord = BitSetWords.bits2words(finalBitsetSize) - 1;
+        this.lastMask = finalBitsetSize % 64 == 0 ? -1L : -1L >>> (64 - finalBitsetSize % 64);
+    }
+
+    /**
+     * @return true if a task found an annihilated accumulator
+     */
+    boolean isAnnihilated() {
+        return annihilated;
+    }
+
+    /**
+     * @return a new bitset equal to the annihilator, the result of the operation once a task found it
+     */
+    MutableBitSet result() {
+        return Algebra.bitsetOf(annihilator, finalBitsetSize);
+    }
+
+    /**
+     * Moves the cursor of the given accumulator forward, publishing that the result is annihilated if it has no word left
+     *
+     * @param accumulator the accumulator of a task
+     * @param cursor      the first word of the accumulator that may not be annihilated
+     * @return the new cursor
+     */
+    int advance(final AbstractBitSet accumulator, final int cursor) {
+        int numWords = BitSetWords.numWords(accumulator);
+        // words past the size of the result do not need to be full, but they do need to be empty
+        int end = fill == 0L ? numWords : lastWord + 1;
+        int to = Math.min(end, numWords);
+        // an AND with a shorter bitset can leave fewer words in use than the cursor had passed
+        int next = firstLive(BitSetWords.words(accumulator), Math.min(cursor, to), to);
+        if (next >= end) {
+            annihilated = true;
+        }
+        return next;
+    }
+
+    /**
+     * @param words the words to scan
+     * @param from  the first word to scan
+     * @param to    the word to stop at, exclusive
+     * @return the index of the first word in [from, to) not equal to the annihilator, to if they all are
+     */
+    int firstLive(final long[] words, final int from, final int to) {
+        int w = from;
+        while (w < to && isAnnihilated(words[w], w)) {
+            w++;
+        }
+        return w;
+    }
+
+    private boolean isAnnihilated(final long word, final int index) {
+        if (fill == 0L) {
+            return word == 0L;
+        }
+        if (index < lastWord) {
+            return word == -1L;
+        }
+        return index > lastWord || (word & lastMask) == lastMask;
+    }
+}
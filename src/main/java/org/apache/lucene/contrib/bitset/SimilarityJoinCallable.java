@@ -0,0 +1,213 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Finds the pairs of bitsets whose Jaccard index reaches a threshold between the rows of two blocks of the bitsets sorted by cardinality, and those of the blocks mirroring them, so that every task gets about the same share of the triangle of pairs.<br/><br/>
+ * A pair is only counted if it passes three filters, cheapest first:
+ * <ul>
+ * <li>length: the cardinality of the larger bitset is at most that of the smaller one divided by the threshold, which bounds a row to a window of the sorted bitsets and skips whole blocks;</li>
+ * <li>prefix: bitsets reaching the threshold share a bit among the first |x| - &lceil;t |x|&rceil; + 1 bits of each, so the count of the words holding the shorter prefix must not be zero;</li>
+ * <li>suffix: the intersection, counted a block of words at a time, is given up as soon as the bits left in the row bitset cannot make up for the missing overlap.</li>
+ * </ul>
+ */
+class SimilarityJoinCallable implements Callable<Void> {
+
+    /**
+     * The number of bitsets of a block of rows
+     */
+    static final int ROWS_PER_BLOCK = 256;
+
+    private final Index index;
+    private final int firstBlock;
+    private final int mirrorBlock;
+    private final PairListener listener;
+
+    SimilarityJoinCallable(final Index index, final int firstBlock, final int mirrorBlock, final PairListener listener) {
+        this.index = index;
+        this.firstBlock = firstBlock;
+        this.mirrorBlock = mirrorBlock;
+        this.listener = listener;
+    }
+
+    /**
+     * @return the tasks covering every pair of the given index, each pairing a block of rows with its mirror
+     */
+    static List<Callable<Void>> tasks(final Index index, final PairListener listener) {
+        int blocks = (index.size() + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>((blocks + 1) / 2);
+        for (int block = 0; block < (blocks + 1) / 2; block++) {
+            tasks.add(new SimilarityJoinCallable(index, block, blocks - 1 - block, listener));
+        }
+        return tasks;
+    }
+
+    @Override
+    public Void call() {
+        long[] suffix = new long[index.maxWords / BitSetWords.BLOCK_WORDS + 2];
+        join(firstBlock, suffix);
+        if (mirrorBlock != firstBlock) {
+            join(mirrorBlock, suffix);
+        }
+        return null;
+    }
+
+    private void join(final int block, final long[] suffix) {
+        int from = block * ROWS_PER_BLOCK;
+        int to = Math.min(index.size(), from + ROWS_PER_BLOCK);
+        for (int a = from; a < to; a++) {
+            long countX = index.cardinalities[a];
+            long maxCount = (long) Math.floor(countX / index.threshold + 1e-9);
+            ImmutableBitSet x = index.bitsets[a];
+            long[] wordsX = BitSetWords.words(x);
+            int lengthX = BitSetWords.numWords(x);
+            suffixCounts(wordsX, lengthX, suffix);
+            for (int b = a + 1; b < index.size() && index.cardinalities[b] <= maxCount; b++) {
+                double similarity = similarity(a, wordsX, lengthX, suffix, b);
+                if (similarity >= index.threshold) {
+                    int first = index.order[a];
+                    int second = index.order[b];
+                    listener.pair(Math.min(first, second), Math.max(first, second), similarity);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the Jaccard index of the bitsets at the given sorted positions, or -1 if a filter rejects them
+     */
+    private double similarity(final int a, final long[] wordsX, final int lengthX, final long[] suffix, final int b) {
+        long countX = index.cardinalities[a];
+        long countY = index.cardinalities[b];
+        long minOverlap = (long) Math.ceil(index.threshold * (countX + countY) / (1.0d + index.threshold) - 1e-9);
+        ImmutableBitSet y = index.bitsets[b];
+        long[] wordsY = BitSetWords.words(y);
+        int shared = Math.min(lengthX, BitSetWords.numWords(y));
+
+        long prefixEnd = Math.min(index.prefixEnds[a], index.prefixEnds[b]);
+        int prefixWord = (int) (prefixEnd >>> 6);
+        long overlap = 0L;
+        for (int w = 0; w < Math.min(prefixWord, shared); w++) {
+            overlap += Long.bitCount(wordsX[w] & wordsY[w]);
+        }
+        if (prefixWord >= shared) {
+            // the prefixes cover all the words in common
+            return overlap == 0L ? -1.0d : (double) overlap / (countX + countY - overlap);
+        }
+        long prefixMask = -1L >>> (63 - (int) (prefixEnd & 63L));
+        if (overlap + Long.bitCount(wordsX[prefixWord] & wordsY[prefixWord] & prefixMask) == 0L) {
+            return -1.0d;
+        }
+
+        for (int w = prefixWord; w < shared; w++) {
+            if (w % BitSetWords.BLOCK_WORDS == 0 && overlap + suffix[w / BitSetWords.BLOCK_WORDS] < minOverlap) {
+                return -1.0d;
+            }
+            overlap += Long.bitCount(wordsX[w] & wordsY[w]);
+        }
+        return (double) overlap / (countX + countY - overlap);
+    }
+
+    /**
+     * Fills suffix[b] with the number of bits set from word b * {@link BitSetWords#BLOCK_WORDS} on
+     */
+    private static void suffixCounts(final long[] words, final int length, final long[] suffix) {
+        Arrays.fill(suffix, 0L);
+        for (int w = length - 1; w >= 0; w--) {
+            suffix[w / BitSetWords.BLOCK_WORDS] += Long.bitCount(words[w]);
+        }
+        for (int b = suffix.length - 2; b >= 0; b--) {
+            suffix[b] += suffix[b + 1];
+        }
+    }
+
+    /**
+     * The bitsets that are not empty, sorted by increasing cardinality, with the position of the last bit of their prefix
+     */
+    static final class Index {
+        private final double threshold;
+        private final int[] order;
+        private final ImmutableBitSet[] bitsets;
+        private final long[] cardinalities;
+        private final long[] prefixEnds;
+        private final int maxWords;
+
+        Index(final ImmutableBitSet[] bs, final double threshold) {
+            this.threshold = threshold;
+            long[] keys = new long[bs.length];
+            int size = 0;
+            for (int i = 0; i < bs.length; i++) {
+                long cardinality = bs[i].cardinality();
+                if (cardinality > 0L) {
+                    // cardinality in the high bits, index in the low bits: sorting the keys sorts the indices by cardinality
+                    keys[size++] = (cardinality << 32) | i;
+                }
+            }
+            Arrays.sort(keys, 0, size);
+
+            order = new int[size];
+            bitsets = new ImmutableBitSet[size];
+            cardinalities = new long[size];
+            prefixEnds = new long[size];
+            int words = 0;
+            for (int s = 0; s < size; s++) {
+                order[s] = (int) keys[s];
+                bitsets[s] = bs[order[s]];
+                cardinalities[s] = keys[s] >>> 32;
+                long prefixLength = cardinalities[s] - (long) Math.ceil(threshold * cardinalities[s] - 1e-9) + 1L;
+                prefixEnds[s] = nthSetBit(bitsets[s], Math.min(cardinalities[s], prefixLength));
+                words = Math.max(words, BitSetWords.numWords(bitsets[s]));
+            }
+            maxWords = words;
+        }
+
+        int size() {
+            return order.length;
+        }
+
+        /**
+         * @return the index of the nth bit set, counting from 1
+         */
+        private static long nthSetBit(final ImmutableBitSet bitset, final long n) {
+            long[] words = BitSetWords.words(bitset);
+            int length = BitSetWords.numWords(bitset);
+            long left = n;
+            for (int w = 0; w < length; w++) {
+                long word = words[w];
+                int count = Long.bitCount(word);
+                if (count >= left) {
+                    for (long k = 1; k < left; k++) {
+                        word &= word - 1L;
+                    }
+                    return ((long) w << 6) + Long.numberOfTrailingZeros(word);
+                }
+                left -= count;
+            }
+            throw new IllegalStateException("bitset has fewer than " + n + " bits set");
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.Arrays;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * The built-in {@link SlicingPolicy} implementations
+ */
+public final class SlicingPolicies {
+
+    private SlicingPolicies() {
+        // empty
+    }
+
+    /**
+     * @return a policy creating one slice of the same size per unit of parallelism, the default
+     */
+    public static SlicingPolicy fixedCount() {
+        return new FixedCount(0);
+    }
+
+    /**
+     * @param count the number of slices
+     * @return a policy creating the given number of slices of the same size, regardless of the parallelism
+     */
+    public static SlicingPolicy fixedCount(final int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be at least 1, was " + count);
+        }
+        return new FixedCount(count);
+    }
+
+    /**
+     * @param size the number of bitsets per slice
+     * @return a policy creating slices of the given number of bitsets, the last one possibly smaller
+     */
+    public static SlicingPolicy fixedSize(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be at least 1, was " + size);
+        }
+        return new FixedSize(size);
+    }
+
+    /**
+     * @return a policy creating one slice per unit of parallelism, balanced by the number of words of the bitsets
+     */
+    public static SlicingPolicy wordCountWeighted() {
+        return new Weighted(false);
+    }
+
+    /**
+     * Balancing by cardinality pays a full popcount of every bitset before slicing, so it only pays off when the operation itself is much more expensive than a popcount
+     *
+     * @return a policy creating one slice per unit of parallelism, balanced by the cardinality of the bitsets
+     */
+    public static SlicingPolicy cardinalityWeighted() {
+        return new Weighted(true);
+    }
+
+    /**
+     * Guided self-scheduling: each slice takes 1/parallelism of the bitsets not sliced yet, so slices shrink towards the end of the array. Since the pool runs them in submission order, the large ones start first and the small ones fill the gaps
+     *
+     * @param minSize the minimum number of bitsets per slice
+     * @return a guided self-scheduling policy
+     */
+    public static SlicingPolicy guided(final int minSize) {
+        if (minSize < 1) {
+            throw new IllegalArgumentException("min size must be at least 1, was " + minSize);
+        }
+        return new Guided(minSize);
+    }
+
+    private static final class FixedCount implements SlicingPolicy {
+        private final int count;
+
+        FixedCount(final int count) {
+            this.count = count;
+        }
+
+        @Override
+        public int[] slice(final ImmutableBitSet[] bs, final int parallelism) {
+            int slices = Math.max(1, Math.min(bs.length, count > 0 ? count : parallelism));
+            int[] bounds = new int[slices + 1];
+            for (int i = 0; i <= slices; i++) {
+                bounds[i] = (int) ((long) bs.length * i / slices);
+            }
+            return bounds;
+        }
+    }
+
+    private static final class FixedSize implements SlicingPolicy {
+        private final int size;
+
+        FixedSize(final int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int[] slice(final ImmutableBitSet[] bs, final int parallelism) {
+            int slices = (bs.length + size - 1) / size;
+            int[] bounds = new int[slices + 1];
+            for (int i = 0; i < slices; i++) {
+                bounds[i] = i * size;
+            }
+            bounds[slices] = bs.length;
+            return bounds;
+        }
+    }
+
+    private static final class Weighted implements SlicingPolicy {
+        private final boolean cardinality;
+
+        Weighted(final boolean cardinality) {
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public int[] slice(final ImmutableBitSet[] bs, final int parallelism) {
+            long[] weights = new long[bs.length];
+            long total = 0L;
+            for (int i = 0; i < bs.length; i++) {
+                // + 1 so that empty bitsets still cost their loop iteration
+                weights[i] = 1L + (cardinality ? bs[i].cardinality() : BitSetWords.numWords(bs[i]));
+                total += weights[i];
+            }
+
+            int slices = Math.max(1, Math.min(bs.length, parallelism));
+            int[] bounds = new int[slices + 1];
+            int next = 1;
+            long accumulated = 0L;
+            for (int i = 0; i < bs.length - 1 && next < slices; i++) {
+                accumulated += weights[i];
+                if (accumulated >= total * next / slices) {
+                    bounds[next++] = i + 1;
+                }
+            }
+            bounds[next] = bs.length;
+            return next == slices ? bounds : Arrays.copyOf(bounds, next + 1);
+        }
+    }
+
+    private static final class Guided implements SlicingPolicy {
+        private final int minSize;
+
+        Guided(final int minSize) {
+            this.minSize = minSize;
+        }
+
+        @Override
+        public int[] slice(final ImmutableBitSet[] bs, final int parallelism) {
+            int p = Math.max(1, parallelism);
+            int[] bounds = new int[bs.length + 1];
+            int slices = 0;
+            int from = 0;
+            while (from < bs.length) {
+                int remaining = bs.length - from;
+                from += Math.min(remaining, Math.max(minSize, (remaining + p - 1) / p));
+                bounds[++slices] = from;
+            }
+            return Arrays.copyOf(bounds, slices + 1);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Decides how an array of bitsets is split in contiguous slices, each slice becoming a task submitted to the thread pool
+ *
+ * @see SlicingPolicies
+ */
+public interface SlicingPolicy {
+
+  /**
+   * Splits the given array of bitsets in contiguous slices
+   *
+   * @param bs          the bitsets to split, never empty
+   * @param parallelism the number of tasks the thread pool of the executor can run at the same time
+   * @return the boundaries of the slices: slice N is [bounds[N], bounds[N + 1]), so the first bound is 0, the last one is bs.length and they are strictly increasing
+   */
+  int[] slice(ImmutableBitSet[] bs, int parallelism);
+}
@@ -0,0 +1,223 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An ExecutorService meant to back a {@link BitsetOperationsExecutor}: tasks run on virtual threads when the JVM has them (Java 21 and later, through the multi-release jar) and on a fixed pool of platform threads otherwise. In both cases at most maxParallelism tasks use a CPU at the same time.<br/><br/>
+ * {@link #invokeAll(Collection)} is a structured scope: the first task to fail cancels, and interrupts, its siblings, and the call only returns once every task of the scope has terminated
+ */
+public final class StructuredExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int maxParallelism;
+
+    /**
+     * Creates a new StructuredExecutorService bounded by the available cores
+     */
+    public StructuredExecutorService() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new StructuredExecutorService
+     *
+     * @param maxParallelism the maximum number of tasks running at the same time
+     */
+    public StructuredExecutorService(final int maxParallelism) {
+        if (maxParallelism < 1) {
+            throw new IllegalArgumentException("max parallelism must be at least 1, was " + maxParallelism);
+        }
+        this.maxParallelism = maxParallelism;
+        this.permits = new Semaphore(maxParallelism);
+        this.delegate = VirtualThreadSupport.newExecutor(maxParallelism);
+    }
+
+    /**
+     * @return true if the tasks run on virtual threads, false if they run on platform threads
+     */
+    public static boolean isVirtual() {
+        return VirtualThreadSupport.isVirtual();
+    }
+
+    /**
+     * @return the maximum number of tasks running at the same time
+     */
+    public int getMaxParallelism() {
+        return maxParallelism;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        delegate.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!acquire()) {
+                    return;
+                }
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            }
+        });
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(final Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return invokeAll(tasks, -1L);
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(final Collection<? extends Callable<T>> tasks, final long timeout, final TimeUnit unit) throws InterruptedException {
+        return invokeAll(tasks, Math.max(0L, unit.toNanos(timeout)));
+    }
+
+    private <T> List<Future<T>> invokeAll(final Collection<? extends Callable<T>> tasks, final long timeoutNanos) throws InterruptedException {
+        final List<FutureTask<T>> scope = new ArrayList<FutureTask<T>>(tasks.size());
+        final CountDownLatch terminated = new CountDownLatch(tasks.size());
+        for (Callable<T> task : tasks) {
+            scope.add(new FutureTask<T>(task) {
+                @Override
+                protected void setException(final Throwable t) {
+                    super.setException(t);
+                    cancelAll(scope);
+                }
+            });
+        }
+
+        int submitted = 0;
+        try {
+            for (final FutureTask<T> future : scope) {
+                delegate.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (future.isDone()) {
+                                return;
+                            }
+                            if (!acquire()) {
+                                future.cancel(false);
+                                return;
+                            }
+                            try {
+                                future.run();
+                            } finally {
+                                permits.release();
+                            }
+                        } finally {
+                            terminated.countDown();
+                        }
+                    }
+                });
+                submitted++;
+            }
+
+            if (timeoutNanos < 0L) {
+                terminated.await();
+            } else if (!terminated.await(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                cancelAll(scope);
+                awaitUninterruptibly(terminated);
+            }
+        } catch (InterruptedException e) {
+            cancelAll(scope);
+            awaitUninterruptibly(terminated);
+            throw e;
+        } catch (RuntimeException e) {
+            // tasks never submitted will never count down
+            cancelAll(scope);
+            for (int i = submitted; i < scope.size(); i++) {
+                terminated.countDown();
+            }
+            awaitUninterruptibly(terminated);
+            throw e;
+        }
+        return new ArrayList<Future<T>>(scope);
+    }
+
+    private boolean acquire() {
+        try {
+            permits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static <T> void cancelAll(final List<FutureTask<T>> scope) {
+        for (FutureTask<T> future : scope) {
+            future.cancel(true);
+        }
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.concurrent.Callable;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Computes the words [fromWord, toWord) of the bitset of the positions set in at least, or exactly, k of the bitsets.<br/>
+ * Each position has a bit-sliced saturating counter: plane p holds bit p of the counters of 64 positions, and the counters start at 2<sup>P</sup> - cap so that reaching the cap is the carry out of the last plane. Positions that reached it are frozen in the capped word and take no further carries, so P is the number of bits of the cap, not of the number of bitsets. No per-position count is ever materialized
+ */
+class ThresholdCallable implements Callable<Void> {
+
+    private final ImmutableBitSet[] bs;
+    private final long[] result;
+    private final int fromWord;
+    private final int toWord;
+    private final int k;
+    private final boolean exactly;
+    private final int cap;
+    private final int numPlanes;
+
+    /**
+     * @param k       the number of bitsets a position must be set in
+     * @param exactly true for positions set in exactly k bitsets, false for at least k
+     */
+    public ThresholdCallable(final ImmutableBitSet[] bs, final long[] result, final int fromWord, final int toWord, final int k, final boolean exactly) {
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        this.bs = bs;
+        this.result = result;
+        this.fromWord = fromWord;
+        this.toWord = toWord;
+        this.k = k;
+        this.exactly = exactly;
+        // exactly k needs to tell k from k + 1
+        this.cap = exactly ? k + 1 : k;
+        this.numPlanes = 32 - Integer.numberOfLeadingZeros(cap - 1);
+    }
+
+    @Override
+    public Void call() {
+        long[][] planes = new long[numPlanes][BitSetWords.BLOCK_WORDS];
+        long[] capped = new long[BitSetWords.BLOCK_WORDS];
+        int offset = numPlanes == 0 ? 0 : (int) ((1L << numPlanes) - cap);
+        for (int from = fromWord; from < toWord; from += BitSetWords.BLOCK_WORDS) {
+            int length = Math.min(BitSetWords.BLOCK_WORDS, toWord - from);
+            for (int p = 0; p < numPlanes; p++) {
+                long start = ((offset >>> p) & 1) == 0 ? 0L : -1L;
+                for (int w = 0; w < length; w++) {
+                    planes[p][w] = start;
+                }
+            }
+            for (int w = 0; w < length; w++) {
+                capped[w] = 0L;
+            }
+            for (int i = 0; i < bs.length; i++) {
+                if (!exactly && BitSetWords.all(capped, length, -1L)) {
+                    // every position reached k, the remaining bitsets cannot change the block
+                    break;
+                }
+                add(planes, capped, from, length, bs[i]);
+            }
+            for (int w = 0; w < length; w++) {
+                if (exactly) {
+                    // the counters of exactly k are all ones, 2^P - (k + 1) + k
+                    long all = ~capped[w];
+                    for (int p = 0; p < numPlanes; p++) {
+                        all &= planes[p][w];
+                    }
+                    result[from + w] = all;
+                } else {
+                    result[from + w] = capped[w];
+                }
+            }
+        }
+        return null;
+    }
+
+    private void add(final long[][] planes, final long[] capped, final int from, final int length, final ImmutableBitSet bitset) {
+        long[] words = BitSetWords.words(bitset);
+        int last = BitSetWords.wordsInBlock(BitSetWords.numWords(bitset), from, length);
+        for (int w = 0; w < last; w++) {
+            long carry = words[from + w] & ~capped[w];
+            for (int p = 0; p < numPlanes && carry != 0L; p++) {
+                long plane = planes[p][w];
+                planes[p][w] = plane ^ carry;
+                carry &= plane;
+            }
+            capped[w] |= carry;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.concurrent.Callable;
+
+import org.apache.lucene.contrib.bitset.ops.WordwiseOp;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Computes one column of tiles, the words [fromWord, toWord) of the result. The bitsets are streamed through the column a tile at a time, folding all the bitsets of a tile into a word before storing it back, so the accumulator block stays hot
+ */
+class TiledAssociativeCallable implements Callable<Void> {
+
+    private final ImmutableBitSet[] bs;
+    private final long[] result;
+    private final int fromWord;
+    private final int toWord;
+    private final int bitsetsPerTile;
+    private final WordwiseOp operation;
+    private final CancellationToken token;
+    private final ShortCircuit shortCircuit;
+
+    public TiledAssociativeCallable(final ImmutableBitSet[] bs, final long[] result, final int fromWord, final int toWord, final int bitsetsPerTile, final WordwiseOp operation, final CancellationToken token, final ShortCircuit shortCircuit) {
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        this.bs = bs;
+        this.result = result;
+        this.fromWord = fromWord;
+        this.toWord = toWord;
+        this.bitsetsPerTile = bitsetsPerTile;
+        this.operation = operation;
+        this.token = token;
+        this.shortCircuit = shortCircuit;
+    }
+
+    @Override
+    public Void call() {
+        long[][] tileWords = new long[bitsetsPerTile][];
+        int[] tileLengths = new int[bitsetsPerTile];
+
+        int cursor = fromWord;
+        for (int tileStart = 0; tileStart < bs.length; tileStart += bitsetsPerTile) {
+            if (token != null && tileStart > 0 && token.shouldStop()) {
+                break;
+            }
+            if (shortCircuit != null && tileStart > 0) {
+                // once every word of the column is annihilated the remaining tiles cannot change it
+                cursor = shortCircuit.firstLive(result, cursor, toWord);
+                if (cursor == toWord) {
+                    break;
+                }
+            }
+            int tileSize = Math.min(bitsetsPerTile, bs.length - tileStart);
+            for (int t = 0; t < tileSize; t++) {
+                tileWords[t] = BitSetWords.words(bs[tileStart + t]);
+                tileLengths[t] = BitSetWords.numWords(bs[tileStart + t]);
+            }
+            // the very first bitset seeds the accumulator
+            int first = tileStart == 0 ? 1 : 0;
+
+            for (int w = fromWord; w < toWord; w++) {
+                long accumulator = tileStart == 0 ? word(tileWords[0], tileLengths[0], w) : result[w];
+                for (int t = first; t < tileSize; t++) {
+                    accumulator = operation.compute(accumulator, word(tileWords[t], tileLengths[t], w));
+                }
+                result[w] = accumulator;
+            }
+        }
+        return null;
+    }
+
+    private static long word(final long[] words, final int length, final int index) {
+        return index < length ? words[index] : 0L;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import org.apache.lucene.contrib.bitset.ops.WordwiseComparisonOp;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Compares the bitsets in [fromIndex, toIndex) a tile at a time. The tiles of the slice are visited one block of words after the other, so the block of the bitset to compare stays hot while the targets stream through it
+ */
+class TiledComparisonCallable<T> extends AbstractOpCallable<T[]> {
+
+    private final ImmutableBitSet toCompare;
+    private final Tiling tiling;
+    private final WordwiseComparisonOp<T> operation;
+
+    public TiledComparisonCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet toCompare, final Tiling tiling, final WordwiseComparisonOp<T> operation, final CancellationToken token) {
+        super(bs, fromIndex, toIndex, finalBitsetSize, token);
+        this.toCompare = toCompare;
+        this.tiling = tiling;
+        this.operation = operation;
+    }
+
+    @Override
+    public T[] call() {
+        long[] compareWords = BitSetWords.words(toCompare);
+        int compareLength = BitSetWords.numWords(toCompare);
+        int maxLength = compareLength;
+        for (int i = fromIndex; i < toIndex; i++) {
+            maxLength = Math.max(maxLength, BitSetWords.numWords(bs[i]));
+        }
+
+        long[] counts = new long[toIndex - fromIndex];
+        int wordsPerTile = tiling.getWordsPerTile();
+        int bitsetsPerTile = tiling.getBitsetsPerTile();
+        int tiles = 0;
+        for (int blockStart = 0; blockStart < maxLength; blockStart += wordsPerTile) {
+            int blockEnd = Math.min(maxLength, blockStart + wordsPerTile);
+            for (int tileStart = fromIndex; tileStart < toIndex; tileStart += bitsetsPerTile) {
+                int tileEnd = Math.min(toIndex, tileStart + bitsetsPerTile);
+                if (shouldStop(tiles++)) {
+                    // every count is partial, none can be returned
+                    return ArrayUtils.typedArray(new Object[counts.length]);
+                }
+                for (int i = tileStart; i < tileEnd; i++) {
+                    long[] words = BitSetWords.words(bs[i]);
+                    int length = BitSetWords.numWords(bs[i]);
+                    long count = 0L;
+                    for (int w = blockStart; w < blockEnd; w++) {
+                        count += operation.count(w < length ? words[w] : 0L, w < compareLength ? compareWords[w] : 0L);
+                    }
+                    counts[i - fromIndex] += count;
+                }
+            }
+        }
+
+        Object[] result = new Object[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            result[i] = operation.valueOf(counts[i]);
+        }
+        return ArrayUtils.typedArray(result);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+/**
+ * The shape of the tiles used by {@link ExecutionMode#TILED}: blocks of bitsets by blocks of 64-bit words, sized so that one tile (the accumulator or comparison block plus one block per bitset of the tile) fits in the given cache budget
+ */
+public final class Tiling {
+
+    /**
+     * The default cache budget, a conservative per-core L2 size
+     */
+    public static final int DEFAULT_CACHE_BUDGET = 256 * 1024;
+
+    /**
+     * The default number of bitsets per tile
+     */
+    public static final int DEFAULT_BITSETS_PER_TILE = 8;
+
+    static final int WORDS_PER_CACHE_LINE = 8;
+
+    private final int bitsetsPerTile;
+    private final int wordsPerTile;
+
+    /**
+     * Creates a new Tiling
+     *
+     * @param cacheBudget    the number of bytes a tile may occupy, tipically the per-core L2 size
+     * @param bitsetsPerTile the number of bitsets streamed together through one block of words
+     */
+    public Tiling(final int cacheBudget, final int bitsetsPerTile) {
+        if (bitsetsPerTile < 1) {
+            throw new IllegalArgumentException("bitsets per tile must be at least 1, was " + bitsetsPerTile);
+        }
+        if (cacheBudget < 8 * WORDS_PER_CACHE_LINE * (bitsetsPerTile + 1)) {
+            throw new IllegalArgumentException("cache budget of " + cacheBudget + " bytes cannot hold a cache line for " + bitsetsPerTile + " bitsets");
+        }
+        this.bitsetsPerTile = bitsetsPerTile;
+        int words = cacheBudget / (8 * (bitsetsPerTile + 1));
+        this.wordsPerTile = words - (words % WORDS_PER_CACHE_LINE);
+    }
+
+    /**
+     * @return a Tiling with {@link #DEFAULT_CACHE_BUDGET} and {@link #DEFAULT_BITSETS_PER_TILE}
+     */
+    public static Tiling defaultTiling() {
+        return new Tiling(DEFAULT_CACHE_BUDGET, DEFAULT_BITSETS_PER_TILE);
+    }
+
+    /**
+     * @param bitsets a number of bitsets visited together
+     * @return the number of 64-bit words of a block, a multiple of the cache line, such that one block of each of the given bitsets fits in the cache budget of a tile
+     */
+    int wordsPerBlock(final int bitsets) {
+        int words = (int) ((long) wordsPerTile * (bitsetsPerTile + 1) / Math.max(1, bitsets));
+        return Math.max(WORDS_PER_CACHE_LINE, words - (words % WORDS_PER_CACHE_LINE));
+    }
+
+    /**
+     * @return the number of bitsets of a tile
+     */
+    public int getBitsetsPerTile() {
+        return bitsetsPerTile;
+    }
+
+    /**
+     * @return the number of 64-bit words of a tile, a multiple of the cache line
+     */
+    public int getWordsPerTile() {
+        return wordsPerTile;
+    }
+}
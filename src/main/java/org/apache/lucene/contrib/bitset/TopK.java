@@ -0,0 +1,71 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+/**
+ * The K bitsets with the highest scores, best first: by decreasing score, then by increasing index in the input array for equal scores
+ */
+public final class TopK {
+
+    private final int[] indices;
+    private final long[] scores;
+
+    TopK(final int[] indices, final long[] scores) {
+        this.indices = indices;
+        this.scores = scores;
+    }
+
+    /**
+     * @return the number of bitsets found, K unless the input array had fewer bitsets
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * @return the indices of the bitsets found in the input array, best first; not a copy
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    /**
+     * @return the scores of the bitsets found, in the same order as {@link #getIndices()}; not a copy
+     */
+    public long[] getScores() {
+        return scores;
+    }
+
+    /**
+     * @param rank a rank in [0, {@link #size()})
+     * @return the index in the input array of the bitset at the given rank
+     */
+    public int getIndex(final int rank) {
+        return indices[rank];
+    }
+
+    /**
+     * @param rank a rank in [0, {@link #size()})
+     * @return the score of the bitset at the given rank
+     */
+    public long getScore(final int rank) {
+        return scores[rank];
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import org.apache.lucene.contrib.bitset.ops.LongComparisonOp;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Scores the bitsets in [fromIndex, toIndex) against a query, keeping the K best of the slice in a {@link TopKHeap}.<br/>
+ * Given an upper bound of the score of each bitset, a bitset whose bound cannot beat the worst of the K kept so far is not scored at all
+ */
+class TopKCallable extends AbstractOpCallable<TopKHeap> {
+
+    private final ImmutableBitSet query;
+    private final int k;
+    private final LongComparisonOp scorer;
+    private final long[] bounds;
+
+    public TopKCallable(final ImmutableBitSet[] bs, final int fromIndex, final int toIndex, final int finalBitsetSize, final ImmutableBitSet query, final int k, final LongComparisonOp scorer, final long[] bounds) {
+        super(bs, fromIndex, toIndex, finalBitsetSize);
+        this.query = query;
+        this.k = k;
+        this.scorer = scorer;
+        this.bounds = bounds;
+    }
+
+    @Override
+    public TopKHeap call() {
+        TopKHeap heap = new TopKHeap(Math.min(k, toIndex - fromIndex));
+        for (int i = fromIndex; i < toIndex; i++) {
+            if (bounds != null && !heap.admits(i, bounds[i])) {
+                continue;
+            }
+            heap.offer(i, scorer.compute(bs[i], query));
+        }
+        return heap;
+    }
+}
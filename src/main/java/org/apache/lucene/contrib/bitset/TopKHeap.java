@@ -0,0 +1,130 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+/**
+ * A bounded heap of (index, score) pairs held in two primitive arrays, keeping the K best: its root is the worst pair kept, the first one evicted.<br/>
+ * A pair is better than another if its score is higher or, for equal scores, its index is lower
+ */
+final class TopKHeap {
+
+    private final int[] indices;
+    private final long[] scores;
+    private int size;
+
+    TopKHeap(final int k) {
+        indices = new int[k];
+        scores = new long[k];
+    }
+
+    /**
+     * @return true if a pair with the given index and score would be kept, which is always the case until the heap holds K pairs
+     */
+    boolean admits(final int index, final long score) {
+        return size < indices.length || better(index, score, indices[0], scores[0]);
+    }
+
+    /**
+     * Adds the given pair if it is among the K best so far
+     */
+    void offer(final int index, final long score) {
+        if (size < indices.length) {
+            indices[size] = index;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (better(index, score, indices[0], scores[0])) {
+            indices[0] = index;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Adds the pairs of the given heap, keeping the K best of both
+     */
+    void offerAll(final TopKHeap other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.indices[i], other.scores[i]);
+        }
+    }
+
+    /**
+     * Sorts the pairs best first, emptying the heap
+     */
+    TopK toTopK() {
+        int count = size;
+        for (int last = size - 1; last > 0; last--) {
+            // the worst pair left goes to the end
+            swap(0, last);
+            siftDown(0, last);
+        }
+        size = 0;
+        int[] sortedIndices = new int[count];
+        long[] sortedScores = new long[count];
+        System.arraycopy(indices, 0, sortedIndices, 0, count);
+        System.arraycopy(scores, 0, sortedScores, 0, count);
+        return new TopK(sortedIndices, sortedScores);
+    }
+
+    private void siftUp(final int from) {
+        int child = from;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (!better(indices[parent], scores[parent], indices[child], scores[child])) {
+                return;
+            }
+            swap(parent, child);
+            child = parent;
+        }
+    }
+
+    private void siftDown(final int from, final int length) {
+        int parent = from;
+        while (true) {
+            int worst = parent;
+            int left = 2 * parent + 1;
+            int right = left + 1;
+            if (left < length && better(indices[worst], scores[worst], indices[left], scores[left])) {
+                worst = left;
+            }
+            if (right < length && better(indices[worst], scores[worst], indices[right], scores[right])) {
+                worst = right;
+            }
+            if (worst == parent) {
+                return;
+            }
+            swap(parent, worst);
+            parent = worst;
+        }
+    }
+
+    private void swap(final int i, final int j) {
+        int index = indices[i];
+        indices[i] = indices[j];
+        indices[j] = index;
+        long score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    private static boolean better(final int index, final long score, final int otherIndex, final long otherScore) {
+        return score > otherScore || (score == otherScore && index < otherIndex);
+    }
+}
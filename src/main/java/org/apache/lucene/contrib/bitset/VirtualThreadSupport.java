@@ -0,0 +1,59 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads of a {@link StructuredExecutorService}. This is the version for JVMs without virtual threads: a fixed pool of daemon platform threads, one per unit of parallelism.<br/>
+ * The multi-release jar replaces it with the version in src/main/java21 on Java 21 and later
+ */
+final class VirtualThreadSupport {
+
+    private VirtualThreadSupport() {
+        // empty
+    }
+
+    /**
+     * @return true if the tasks run on virtual threads
+     */
+    static boolean isVirtual() {
+        return false;
+    }
+
+    /**
+     * @param maxParallelism the maximum number of tasks running at the same time
+     * @return the executor running the tasks of a {@link StructuredExecutorService}
+     */
+    static ExecutorService newExecutor(final int maxParallelism) {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(maxParallelism, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "bitset-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
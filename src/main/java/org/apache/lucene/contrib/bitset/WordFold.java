@@ -0,0 +1,136 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import org.apache.lucene.contrib.bitset.ops.AND;
+import org.apache.lucene.contrib.bitset.ops.NOT;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.apache.lucene.contrib.bitset.ops.WordwiseOp;
+import org.apache.lucene.contrib.bitset.ops.XOR;
+
+/**
+ * Folds a run of words into a block with one operation. The built-in operations get a loop of their own with the operator inlined, so the JIT compiles a tight (and vectorizable) loop instead of an interface call per word; any other {@link WordwiseOp} gets the generic loop
+ */
+abstract class WordFold {
+
+    /**
+     * out[w] = out[w] op words[from + w], for w in [0, length)
+     */
+    abstract void fold(WordwiseOp operation, long[] out, long[] words, int from, int length);
+
+    /**
+     * out[w] = out[w] op 0, for w in [from, length): the words past the end of a shorter bitset
+     */
+    abstract void foldZeros(WordwiseOp operation, long[] out, int from, int length);
+
+    /**
+     * @param operation an operation
+     * @return the fold specialized for the given operation
+     */
+    static WordFold of(final WordwiseOp operation) {
+        if (operation instanceof AND) {
+            return AND_FOLD;
+        }
+        if (operation instanceof OR) {
+            return OR_FOLD;
+        }
+        if (operation instanceof XOR) {
+            return XOR_FOLD;
+        }
+        if (operation instanceof NOT) {
+            return AND_NOT_FOLD;
+        }
+        return GENERIC_FOLD;
+    }
+
+    private static final WordFold AND_FOLD = new WordFold() {
+        @Override
+        void fold(final WordwiseOp operation, final long[] out, final long[] words, final int from, final int length) {
+            for (int w = 0; w < length; w++) {
+                out[w] &= words[from + w];
+            }
+        }
+
+        @Override
+        void foldZeros(final WordwiseOp operation, final long[] out, final int from, final int length) {
+            for (int w = from; w < length; w++) {
+                out[w] = 0L;
+            }
+        }
+    };
+
+    private static final WordFold OR_FOLD = new WordFold() {
+        @Override
+        void fold(final WordwiseOp operation, final long[] out, final long[] words, final int from, final int length) {
+            for (int w = 0; w < length; w++) {
+                out[w] |= words[from + w];
+            }
+        }
+
+        @Override
+        void foldZeros(final WordwiseOp operation, final long[] out, final int from, final int length) {
+            // x | 0 == x
+        }
+    };
+
+    private static final WordFold XOR_FOLD = new WordFold() {
+        @Override
+        void fold(final WordwiseOp operation, final long[] out, final long[] words, final int from, final int length) {
+            for (int w = 0; w < length; w++) {
+                out[w] ^= words[from + w];
+            }
+        }
+
+        @Override
+        void foldZeros(final WordwiseOp operation, final long[] out, final int from, final int length) {
+            // x ^ 0 == x
+        }
+    };
+
+    private static final WordFold AND_NOT_FOLD = new WordFold() {
+        @Override
+        void fold(final WordwiseOp operation, final long[] out, final long[] words, final int from, final int length) {
+            for (int w = 0; w < length; w++) {
+                out[w] &= ~words[from + w];
+            }
+        }
+
+        @Override
+        void foldZeros(final WordwiseOp operation, final long[] out, final int from, final int length) {
+            // x & ~0 == x
+        }
+    };
+
+    private static final WordFold GENERIC_FOLD = new WordFold() {
+        @Override
+        void fold(final WordwiseOp operation, final long[] out, final long[] words, final int from, final int length) {
+            for (int w = 0; w < length; w++) {
+                out[w] = operation.compute(out[w], words[from + w]);
+            }
+        }
+
+        @Override
+        void foldZeros(final WordwiseOp operation, final long[] out, final int from, final int length) {
+            for (int w = from; w < length; w++) {
+                out[w] = operation.compute(out[w], 0L);
+            }
+        }
+    };
+}
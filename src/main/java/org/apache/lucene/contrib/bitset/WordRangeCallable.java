@@ -0,0 +1,89 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.concurrent.Callable;
+
+import org.apache.lucene.contrib.bitset.ops.WordwiseOp;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Computes the words [fromWord, toWord) of the result, sweeping every input bitset over that range and writing straight into the shared result words
+ */
+class WordRangeCallable implements Callable<Void> {
+
+    private final ImmutableBitSet[] bs;
+    private final long[] result;
+    private final int fromWord;
+    private final int toWord;
+    private final WordwiseOp operation;
+    private final CancellationToken token;
+    private final ShortCircuit shortCircuit;
+
+    public WordRangeCallable(final ImmutableBitSet[] bs, final long[] result, final int fromWord, final int toWord, final WordwiseOp operation, final CancellationToken token, final ShortCircuit shortCircuit) {
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        this.bs = bs;
+        this.result = result;
+        this.fromWord = fromWord;
+        this.toWord = toWord;
+        this.operation = operation;
+        this.token = token;
+        this.shortCircuit = shortCircuit;
+    }
+
+    @Override
+    public Void call() {
+        long[] words = BitSetWords.words(bs[0]);
+        int last = Math.min(toWord, BitSetWords.numWords(bs[0]));
+        for (int w = fromWord; w < last; w++) {
+            result[w] = words[w];
+        }
+        for (int w = Math.max(fromWord, last); w < toWord; w++) {
+            result[w] = 0L;
+        }
+
+        int cursor = fromWord;
+        for (int i = 1; i < bs.length; i++) {
+            if (token != null && (i - 1) % CancellationToken.CHECK_INTERVAL == 0 && token.shouldStop()) {
+                break;
+            }
+            if (shortCircuit != null) {
+                // once every word of the range is annihilated the remaining bitsets cannot change it
+                cursor = shortCircuit.firstLive(result, cursor, toWord);
+                if (cursor == toWord) {
+                    break;
+                }
+            }
+            words = BitSetWords.words(bs[i]);
+            last = Math.min(toWord, BitSetWords.numWords(bs[i]));
+            for (int w = fromWord; w < last; w++) {
+                result[w] = operation.compute(result[w], words[w]);
+            }
+            // words past the end of a bitset are zero
+            for (int w = Math.max(fromWord, last); w < toWord; w++) {
+                result[w] = operation.compute(result[w], 0L);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.concurrent.Callable;
+
+import org.apache.lucene.contrib.bitset.ops.Element;
+import org.apache.lucene.contrib.bitset.ops.WordwiseOp;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * Counts the bits set in the words [fromWord, toWord) of the result of an operation over all the bitsets, without storing the result: each block of {@link BitSetWords#BLOCK_WORDS} words is folded across the bitsets in a buffer that stays in the L1 cache, and counted before the buffer is reused for the next block.<br/>
+ * A block folded down to the annihilator of the operation takes no more bitsets
+ */
+class WordRangeCountCallable implements Callable<Long> {
+
+    private final ImmutableBitSet[] bs;
+    private final int fromWord;
+    private final int toWord;
+    private final WordwiseOp operation;
+    private final WordFold fold;
+    private final Element annihilator;
+
+    public WordRangeCountCallable(final ImmutableBitSet[] bs, final int fromWord, final int toWord, final WordwiseOp operation) {
+        if (bs == null || bs.length == 0) {
+            throw new IllegalArgumentException("bit sets cannot be null or empty");
+        }
+        this.bs = bs;
+        this.fromWord = fromWord;
+        this.toWord = toWord;
+        this.operation = operation;
+        this.fold = WordFold.of(operation);
+        this.annihilator = Algebra.annihilator(operation);
+    }
+
+    @Override
+    public Long call() {
+        long[] block = new long[BitSetWords.BLOCK_WORDS];
+        long count = 0L;
+        for (int from = fromWord; from < toWord; from += BitSetWords.BLOCK_WORDS) {
+            int length = Math.min(BitSetWords.BLOCK_WORDS, toWord - from);
+            BitSetWords.load(block, BitSetWords.words(bs[0]), BitSetWords.numWords(bs[0]), from, length);
+            for (int i = 1; i < bs.length; i++) {
+                if (annihilator != Element.NONE && BitSetWords.all(block, length, annihilator == Element.FULL ? -1L : 0L)) {
+                    break;
+                }
+                int last = BitSetWords.wordsInBlock(BitSetWords.numWords(bs[i]), from, length);
+                fold.fold(operation, block, BitSetWords.words(bs[i]), from, last);
+                fold.foldZeros(operation, block, last, length);
+            }
+            for (int w = 0; w < length; w++) {
+                count += Long.bitCount(block[w]);
+            }
+        }
+        return Long.valueOf(count);
+    }
+}
@@ -22,10 +22,40 @@ package org.apache.lucene.contrib.bitset.ops;
 import org.dishevelled.bitset.ImmutableBitSet;
 import org.dishevelled.bitset.MutableBitSet;
 
-public final class AND implements AssociativeOp {
+public final class AND implements WordwiseOp, AlgebraicOp {
 
     @Override
     public void compute(final MutableBitSet accumulator, final ImmutableBitSet bitset) {
         accumulator.and(bitset);
     }
-}
\ No newline at end of file
+
+    @Override
+    public long compute(final long accumulator, final long word) {
+        return accumulator & word;
+    }
+
+    @Override
+    public Element identity() {
+        return Element.FULL;
+    }
+
+    @Override
+    public Element annihilator() {
+        return Element.EMPTY;
+    }
+
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
+
+    @Override
+    public boolean isSelfInverse() {
+        return false;
+    }
+}
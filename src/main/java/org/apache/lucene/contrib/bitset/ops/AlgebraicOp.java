@@ -0,0 +1,52 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.ops;
+
+/**
+ * An {@link AssociativeOp} declaring its algebraic properties, which the executor uses to seed accumulators, simplify the input array, stop early and choose how partial results are merged.<br/><br/>
+ * Properties are stated for the accumulator on the left: acc op x is the accumulator after computing the operation with the bitset x
+ */
+public interface AlgebraicOp extends AssociativeOp {
+
+  /**
+   * @return the element e such that acc op e == acc for every accumulator, the result of reducing no bitset at all
+   */
+  Element identity();
+
+  /**
+   * @return the element z such that z op x == z for every bitset x, so a reduction can stop as soon as its accumulator reaches it; {@link Element#NONE} if there is none
+   */
+  Element annihilator();
+
+  /**
+   * @return true if acc op x op x == acc op x, so a bitset repeated in the input array needs to be computed once
+   */
+  boolean isIdempotent();
+
+  /**
+   * @return true if the bitsets of the input array can be reordered, including the first one, so that partial results of slices can be merged with the operation itself
+   */
+  boolean isCommutative();
+
+  /**
+   * @return true if acc op x op x == acc, so a pair of the same bitset in the input array cancels out
+   */
+  boolean isSelfInverse();
+}
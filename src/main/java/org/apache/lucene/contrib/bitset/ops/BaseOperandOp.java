@@ -0,0 +1,32 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.ops;
+
+/**
+ * An operation whose first bitset is a base every other bitset is applied to, such as AND-NOT.<br/>
+ * The bitsets after the first can be combined first: acc op x op y == acc op (x combiner y). Since the combiner is commutative, they can be combined in parallel and applied to the base once, instead of in a sequential chain
+ */
+public interface BaseOperandOp extends AssociativeOp {
+
+  /**
+   * @return the commutative operation combining the bitsets after the first
+   */
+  AssociativeOp combiner();
+}
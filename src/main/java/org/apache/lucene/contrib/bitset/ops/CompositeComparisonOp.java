@@ -0,0 +1,69 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.ops;
+
+/**
+ * Several comparisons computed together, in one pass over the words of each bitset and of the bitset used as comparison: counts summed word by word, and similarities derived from the intersection count and the cardinalities.<br/>
+ * {@link IntersectionCount}, {@link UnionCount}, {@link DifferenceCount} and {@link XorCount} are derived from the counts the similarities need as well, any other {@link WordwiseComparisonOp} is summed alongside them
+ */
+public final class CompositeComparisonOp {
+
+    private final WordwiseComparisonOp<?>[] counts;
+    private final OverlapSimilarity[] similarities;
+
+    /**
+     * @param counts       the counts to compute, possibly none
+     * @param similarities the similarities to compute, possibly none
+     */
+    public CompositeComparisonOp(final WordwiseComparisonOp<?>[] counts, final OverlapSimilarity[] similarities) {
+        if (counts == null || similarities == null) {
+            throw new IllegalArgumentException("counts and similarities cannot be null");
+        }
+        if (counts.length + similarities.length == 0) {
+            throw new IllegalArgumentException("at least one count or similarity is required");
+        }
+        for (WordwiseComparisonOp<?> count : counts) {
+            if (count == null) {
+                throw new IllegalArgumentException("counts cannot contain null");
+            }
+        }
+        for (OverlapSimilarity similarity : similarities) {
+            if (similarity == null) {
+                throw new IllegalArgumentException("similarities cannot contain null");
+            }
+        }
+        this.counts = counts.clone();
+        this.similarities = similarities.clone();
+    }
+
+    /**
+     * @return the counts to compute, in the order of their results
+     */
+    public WordwiseComparisonOp<?>[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * @return the similarities to compute, in the order of their results
+     */
+    public OverlapSimilarity[] getSimilarities() {
+        return similarities.clone();
+    }
+}
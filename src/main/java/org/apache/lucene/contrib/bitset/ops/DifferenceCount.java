@@ -0,0 +1,49 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.ops;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+
+/**
+ * Counts the number of bits set in the target but not in the bitset used as comparison, in a single pass without any temporary bitset
+ */
+public final class DifferenceCount implements WordwiseComparisonOp<Long>, LongComparisonOp {
+
+    @Override
+    public Long compute(final MutableBitSet accumulator, final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+        return Long.valueOf(ImmutableBitSet.andNotCount(target, toCompare));
+    }
+
+    @Override
+    public long compute(final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+        return ImmutableBitSet.andNotCount(target, toCompare);
+    }
+
+    @Override
+    public long count(final long targetWord, final long toCompareWord) {
+        return Long.bitCount(targetWord & ~toCompareWord);
+    }
+
+    @Override
+    public Long valueOf(final long count) {
+        return Long.valueOf(count);
+    }
+}
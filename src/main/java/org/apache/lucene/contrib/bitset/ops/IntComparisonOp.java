@@ -0,0 +1,37 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.ops;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+
+/**
+ * A comparison whose result is an int, for example a count known to fit in an int. Its results are written straight into an int[] supplied by the caller, without boxing
+ */
+public interface IntComparisonOp {
+
+  /**
+   * Compares the Nth bitset with the bitset used as comparison
+   *
+   * @param target    the Nth bitset to compare
+   * @param toCompare the bitset used as comparison
+   * @return the result of the comparison
+   */
+  int compute(ImmutableBitSet target, ImmutableBitSet toCompare);
+}
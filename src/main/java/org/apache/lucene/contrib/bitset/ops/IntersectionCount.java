@@ -22,10 +22,25 @@ package org.apache.lucene.contrib.bitset.ops;
 import org.dishevelled.bitset.ImmutableBitSet;
 import org.dishevelled.bitset.MutableBitSet;
 
-public final class IntersectionCount implements ComparisonOp<Long> { // --> AndCount
+public final class IntersectionCount implements WordwiseComparisonOp<Long>, LongComparisonOp { // --> AndCount
 
     @Override
     public Long compute(final MutableBitSet accumulator, final ImmutableBitSet target, final ImmutableBitSet toCompare) {
         return Long.valueOf(ImmutableBitSet.andCount(target, toCompare));
     }
+
+    @Override
+    public long compute(final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+        return ImmutableBitSet.andCount(target, toCompare);
+    }
+
+    @Override
+    public long count(final long targetWord, final long toCompareWord) {
+        return Long.bitCount(targetWord & toCompareWord);
+    }
+
+    @Override
+    public Long valueOf(final long count) {
+        return Long.valueOf(count);
+    }
 }
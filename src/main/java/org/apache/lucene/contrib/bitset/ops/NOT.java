@@ -22,10 +22,45 @@ package org.apache.lucene.contrib.bitset.ops;
 import org.dishevelled.bitset.ImmutableBitSet;
 import org.dishevelled.bitset.MutableBitSet;
 
-public final class NOT implements AssociativeOp {
+public final class NOT implements WordwiseOp, AlgebraicOp, BaseOperandOp {
 
     @Override
     public void compute(final MutableBitSet accumulator, final ImmutableBitSet bitset) {
         accumulator.andNot(bitset);
     }
-}
\ No newline at end of file
+
+    @Override
+    public long compute(final long accumulator, final long word) {
+        return accumulator & ~word;
+    }
+
+    @Override
+    public Element identity() {
+        return Element.EMPTY;
+    }
+
+    @Override
+    public Element annihilator() {
+        return Element.EMPTY;
+    }
+
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
+    @Override
+    public boolean isCommutative() {
+        return false;
+    }
+
+    @Override
+    public boolean isSelfInverse() {
+        return false;
+    }
+
+    @Override
+    public AssociativeOp combiner() {
+        return new OR();
+    }
+}
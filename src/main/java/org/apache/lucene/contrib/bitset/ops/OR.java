@@ -22,10 +22,40 @@ package org.apache.lucene.contrib.bitset.ops;
 import org.dishevelled.bitset.ImmutableBitSet;
 import org.dishevelled.bitset.MutableBitSet;
 
-public final class OR implements AssociativeOp {
+public final class OR implements WordwiseOp, AlgebraicOp {
 
     @Override
     public void compute(final MutableBitSet accumulator, final ImmutableBitSet bitset) {
         accumulator.or(bitset);
     }
+
+    @Override
+    public long compute(final long accumulator, final long word) {
+        return accumulator | word;
+    }
+
+    @Override
+    public Element identity() {
+        return Element.EMPTY;
+    }
+
+    @Override
+    public Element annihilator() {
+        return Element.FULL;
+    }
+
+    @Override
+    public boolean isIdempotent() {
+        return true;
+    }
+
+    @Override
+    public boolean isCommutative() {
+        return true;
+    }
+
+    @Override
+    public boolean isSelfInverse() {
+        return false;
+    }
 }
@@ -0,0 +1,48 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.ops;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+
+/**
+ * A similarity computed from three counts: the bits set in both bitsets, and the bits set in each of them.<br/>
+ * The executor computes the counts for each bitset in a single pass over its words, counting the bitset used as comparison only once per slice. Calling {@link #compute(ImmutableBitSet, ImmutableBitSet)} directly counts each of them separately, three passes
+ */
+public abstract class OverlapSimilarity implements ComparisonOp<Double>, DoubleComparisonOp {
+
+    /**
+     * @param intersection   the number of bits set in both bitsets
+     * @param targetCount    the number of bits set in the Nth bitset
+     * @param toCompareCount the number of bits set in the bitset used as comparison
+     * @return the similarity of the bitsets
+     */
+    public abstract double similarity(long intersection, long targetCount, long toCompareCount);
+
+    @Override
+    public final Double compute(final MutableBitSet accumulator, final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+        return Double.valueOf(compute(target, toCompare));
+    }
+
+    @Override
+    public final double compute(final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+        return similarity(ImmutableBitSet.andCount(target, toCompare), target.cardinality(), toCompare.cardinality());
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.ops;
+
+/**
+ * A {@link ComparisonOp} whose result is a function of the sum of a per-word count, so that it can be computed one block of words at a time
+ *
+ * @param <T> the result of the comparison
+ */
+public interface WordwiseComparisonOp<T> extends ComparisonOp<T> {
+
+  /**
+   * Counts the contribution of a single pair of words
+   *
+   * @param targetWord    the word of the Nth bitset to compare
+   * @param toCompareWord the word of the bitset used as comparison, at the same position
+   * @return the count for the given pair of words, to be summed over all the words
+   */
+  long count(long targetWord, long toCompareWord);
+
+  /**
+   * @param count the count summed over all the words
+   * @return the result of the comparison
+   */
+  T valueOf(long count);
+}
@@ -0,0 +1,35 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.ops;
+
+/**
+ * An {@link AssociativeOp} that can also be computed one 64-bit word at a time. This lets the executor partition the result by word ranges instead of by bitsets
+ */
+public interface WordwiseOp extends AssociativeOp {
+
+  /**
+   * Performs the implemented operation on a single word
+   *
+   * @param accumulator the accumulated word
+   * @param word        the word of the next bitset, at the same position
+   * @return the new accumulated word
+   */
+  long compute(long accumulator, long word);
+}
@@ -0,0 +1,48 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the threads of a {@link StructuredExecutorService}: on Java 21 and later every task gets its own virtual thread, the parallelism being bounded by the service itself
+ */
+final class VirtualThreadSupport {
+
+    private VirtualThreadSupport() {
+        // empty
+    }
+
+    /**
+     * @return true if the tasks run on virtual threads
+     */
+    static boolean isVirtual() {
+        return true;
+    }
+
+    /**
+     * @param maxParallelism the maximum number of tasks running at the same time, enforced by the caller
+     * @return the executor running the tasks of a {@link StructuredExecutorService}
+     */
+    static ExecutorService newExecutor(final int maxParallelism) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bitset-", 0).factory());
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * A thread pool with two executors on it, one slicing everything in 4 and one below its sequential cutover, for tests comparing both. Subclasses build their bitsets after {@link #setup()}, and may replace the executors with differently configured ones
+ */
+public abstract class AbstractBitsetOperationsExecutorTest {
+    protected ExecutorService threadPool;
+    protected BitsetOperationsExecutor bitsetOperationsExecutor;
+    protected BitsetOperationsExecutor sequential;
+
+    @Before
+    public void setup() throws Exception {
+        threadPool = Executors.newCachedThreadPool();
+        bitsetOperationsExecutor = new BitsetOperationsExecutor(threadPool, 1).withParallelism(4);
+        sequential = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE);
+    }
+
+    @After
+    public void teardown() {
+        threadPool.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+
+import org.apache.lucene.contrib.bitset.ExecutionMode;
+import org.apache.lucene.contrib.bitset.ops.AND;
+import org.apache.lucene.contrib.bitset.ops.NOT;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.apache.lucene.contrib.bitset.ops.XOR;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AlgebraTest extends AbstractBitsetOperationsExecutorTest {
+    private static final int BS_SIZE = 1000;
+
+    @Test
+    public void shouldAndNotInOrder() throws Exception {
+        ImmutableBitSet[] bs = TestBitSets.random(new Random(3L), 120, BS_SIZE, 5);
+        bs[0] = TestBitSets.random(new Random(4L), BS_SIZE, 900);
+        MutableBitSet expected = new MutableBitSet(BS_SIZE);
+        expected.or(bs[0]);
+        for (int i = 1; i < bs.length; i++) {
+            expected.andNot(bs[i]);
+        }
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.SLICED, ExecutionMode.WORD_RANGE, ExecutionMode.TILED}) {
+            TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(bs, BS_SIZE, new NOT(), mode));
+            TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.performAsync(bs, BS_SIZE, new NOT(), mode).get());
+        }
+    }
+
+    @Test
+    public void shouldCancelXorPairs() throws Exception {
+        ImmutableBitSet a = TestBitSets.of(BS_SIZE, 1, 2, 3);
+        ImmutableBitSet b = TestBitSets.of(BS_SIZE, 3, 4);
+        MutableBitSet expected = new MutableBitSet(BS_SIZE);
+        expected.or(b);
+        ImmutableBitSet[] bs = new ImmutableBitSet[]{a, b, a, a, b, b, a};
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(bs, BS_SIZE, new XOR()));
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(bs, BS_SIZE, new XOR(), ExecutionMode.WORD_RANGE));
+        assertEquals(0L, bitsetOperationsExecutor.perform(new ImmutableBitSet[]{a, a}, BS_SIZE, new XOR(), ExecutionMode.WORD_RANGE).cardinality());
+    }
+
+    @Test
+    public void shouldDedupeIdempotentInputs() throws Exception {
+        ImmutableBitSet a = TestBitSets.of(BS_SIZE, 1, 2, 3);
+        ImmutableBitSet b = TestBitSets.of(BS_SIZE, 3, 4);
+        ImmutableBitSet[] bs = new ImmutableBitSet[]{a, b, a, b, a};
+        assertEquals(4L, bitsetOperationsExecutor.perform(bs, BS_SIZE, new OR()).cardinality());
+        assertEquals(1L, bitsetOperationsExecutor.perform(bs, BS_SIZE, new AND()).cardinality());
+        // the first bitset of an AND-NOT is not a subtrahend
+        assertEquals(0L, sequential.perform(new ImmutableBitSet[]{a, b, a}, BS_SIZE, new NOT()).cardinality());
+        assertEquals(2L, sequential.perform(new ImmutableBitSet[]{a, b, b}, BS_SIZE, new NOT()).cardinality());
+    }
+
+    @Test
+    public void shouldStopOrWhenFull() throws Exception {
+        MutableBitSet full = new MutableBitSet(BS_SIZE);
+        for (int i = 0; i < BS_SIZE; i++) {
+            full.setQuick(i);
+        }
+        // bitsets after the full one are never read, so they can be missing
+        ImmutableBitSet[] bs = new ImmutableBitSet[64];
+        bs[0] = TestBitSets.of(BS_SIZE, 5);
+        bs[1] = full.immutableCopy();
+        assertEquals(BS_SIZE, sequential.perform(bs, BS_SIZE, new OR()).cardinality());
+        assertEquals(BS_SIZE, bitsetOperationsExecutor.perform(bs, BS_SIZE, new OR(), ExecutionMode.WORD_RANGE).cardinality());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.ExecutionMode;
+import org.apache.lucene.contrib.bitset.ops.ComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncOperationTest extends AbstractBitsetOperationsExecutorTest {
+    private static final int BS_SIZE = 1000;
+
+    private ImmutableBitSet[] bs;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        bs = TestBitSets.random(new Random(11L), 40, BS_SIZE, 30);
+    }
+
+    @Test
+    public void shouldOrAsync() throws Exception {
+        MutableBitSet expected = sequential.perform(bs, BS_SIZE, new OR());
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.performAsync(bs, BS_SIZE, new OR()).get());
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.performAsync(bs, BS_SIZE, new OR(), ExecutionMode.WORD_RANGE).get());
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.performAsync(bs, BS_SIZE, new OR(), ExecutionMode.TILED).get());
+        TestBitSets.assertSameBits(BS_SIZE, expected, sequential.performAsync(bs, BS_SIZE, new OR()).get());
+    }
+
+    @Test
+    public void shouldCompleteEmptyOperations() throws Exception {
+        ImmutableBitSet[] empty = new ImmutableBitSet[]{new MutableBitSet(0).immutableCopy(), new MutableBitSet(0).immutableCopy()};
+        assertEquals(0L, bitsetOperationsExecutor.performAsync(empty, 0, new OR(), ExecutionMode.WORD_RANGE).get(10, TimeUnit.SECONDS).cardinality());
+        assertEquals(0L, bitsetOperationsExecutor.performAsync(empty, 0, new OR(), ExecutionMode.TILED).get(10, TimeUnit.SECONDS).cardinality());
+    }
+
+    @Test
+    public void shouldOrAsyncWithForkJoin() throws Exception {
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            MutableBitSet expected = sequential.perform(bs, BS_SIZE, new OR());
+            MutableBitSet actual = new BitsetOperationsExecutor(forkJoinPool, 1).performAsync(bs, BS_SIZE, new OR(), ExecutionMode.FORK_JOIN).get();
+            TestBitSets.assertSameBits(BS_SIZE, expected, actual);
+        } finally {
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldIntersectAsync() throws Exception {
+        Long[] expected = sequential.perform(bs, bs[2], BS_SIZE, new IntersectionCount());
+        assertArrayEquals(expected, bitsetOperationsExecutor.performAsync(bs, bs[2], BS_SIZE, new IntersectionCount()).get());
+        assertArrayEquals(expected, bitsetOperationsExecutor.performAsync(bs, bs[2], BS_SIZE, new IntersectionCount(), ExecutionMode.TILED).get());
+    }
+
+    @Test
+    public void shouldCompose() throws Exception {
+        CompletableFuture<MutableBitSet> union = bitsetOperationsExecutor.performAsync(bs, BS_SIZE, new OR());
+        CompletableFuture<Long[]> counts = bitsetOperationsExecutor.performAsync(bs, bs[0], BS_SIZE, new IntersectionCount());
+        long total = union.thenCombine(counts, (u, c) -> u.cardinality() + c.length).get();
+        assertTrue(total > bs.length);
+    }
+
+    @Test
+    public void shouldCompleteExceptionally() throws Exception {
+        CompletableFuture<Long[]> future = bitsetOperationsExecutor.performAsync(bs, bs[0], BS_SIZE, new ComparisonOp<Long>() {
+            @Override
+            public Long compute(final MutableBitSet accumulator, final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+                throw new IllegalStateException("failing on purpose");
+            }
+        });
+        try {
+            future.get();
+            fail("expected an ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void shouldFailOnNullOrEmptyBitsets() throws Exception {
+        for (ImmutableBitSet[] invalid : new ImmutableBitSet[][] {null, new ImmutableBitSet[0]}) {
+            assertFailedWith(IllegalArgumentException.class, bitsetOperationsExecutor.performAsync(invalid, BS_SIZE, new OR()));
+            assertFailedWith(IllegalArgumentException.class, bitsetOperationsExecutor.performAsync(invalid, BS_SIZE, new OR(), ExecutionMode.WORD_RANGE));
+            assertFailedWith(IllegalArgumentException.class, bitsetOperationsExecutor.performAsync(invalid, bs[0], BS_SIZE, new IntersectionCount()));
+            try {
+                bitsetOperationsExecutor.perform(invalid, BS_SIZE, new OR());
+                fail("expected an IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // same as the future
+            }
+        }
+    }
+
+    @Test
+    public void shouldFailOnUnsupportedMode() throws Exception {
+        CompletableFuture<Long[]> future = bitsetOperationsExecutor.performAsync(bs, bs[0], BS_SIZE, new IntersectionCount(), ExecutionMode.WORD_RANGE);
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    private static void assertFailedWith(final Class<? extends Throwable> expected, final CompletableFuture<?> future) throws Exception {
+        try {
+            future.get();
+            fail("expected an ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(expected.isInstance(e.getCause()));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.CancellationToken;
+import org.apache.lucene.contrib.bitset.ExecutionMode;
+import org.apache.lucene.contrib.bitset.PartialResult;
+import org.apache.lucene.contrib.bitset.ops.ComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CancellationTest extends AbstractBitsetOperationsExecutorTest {
+    private static final int BS_SIZE = 1000;
+
+    private ImmutableBitSet[] bs;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        bs = TestBitSets.random(new Random(13L), 200, BS_SIZE, 30);
+    }
+
+    @Test
+    public void shouldCompleteWhenNotStopped() throws Exception {
+        MutableBitSet expected = sequential.perform(bs, BS_SIZE, new OR());
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.SLICED, ExecutionMode.WORD_RANGE, ExecutionMode.TILED}) {
+            PartialResult<MutableBitSet> result = bitsetOperationsExecutor.perform(bs, BS_SIZE, new OR(), mode, new CancellationToken());
+            assertTrue(result.isComplete());
+            TestBitSets.assertSameBits(BS_SIZE, expected, result.getOrThrow());
+        }
+
+        PartialResult<Long[]> counts = bitsetOperationsExecutor.perform(bs, bs[3], BS_SIZE, new IntersectionCount(), ExecutionMode.TILED, CancellationToken.withTimeout(1L, TimeUnit.HOURS));
+        assertTrue(counts.isComplete());
+        assertArrayEquals(sequential.perform(bs, bs[3], BS_SIZE, new IntersectionCount()), counts.getResult());
+    }
+
+    @Test
+    public void shouldStopWhenCancelled() throws Exception {
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.SLICED, ExecutionMode.WORD_RANGE, ExecutionMode.TILED}) {
+            PartialResult<MutableBitSet> result = bitsetOperationsExecutor.perform(bs, BS_SIZE, new OR(), mode, token);
+            assertFalse(result.isComplete());
+            assertNotNull(result.getResult());
+        }
+        assertTrue(token.isCancelled());
+        assertTrue(token.isStopped());
+
+        PartialResult<Long[]> counts = bitsetOperationsExecutor.perform(bs, bs[3], BS_SIZE, new IntersectionCount(), ExecutionMode.SLICED, token);
+        assertFalse(counts.isComplete());
+        assertNull(counts.getResult());
+        try {
+            counts.getOrThrow();
+            fail("expected a CancellationException");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void shouldStopWhenExpired() throws Exception {
+        CancellationToken token = CancellationToken.withTimeout(0L, TimeUnit.NANOSECONDS);
+        Thread.sleep(1L);
+        assertTrue(token.isExpired());
+        assertFalse(sequential.perform(bs, BS_SIZE, new OR(), ExecutionMode.SLICED, token).isComplete());
+        assertFalse(bitsetOperationsExecutor.perform(bs, bs[3], BS_SIZE, new IntersectionCount(), ExecutionMode.TILED, token).isComplete());
+    }
+
+    @Test
+    public void shouldStopWithForkJoin() throws Exception {
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            CancellationToken token = new CancellationToken();
+            token.cancel();
+            PartialResult<MutableBitSet> result = new BitsetOperationsExecutor(forkJoinPool, 1).perform(bs, BS_SIZE, new OR(), ExecutionMode.FORK_JOIN, token);
+            assertFalse(result.isComplete());
+        } finally {
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldKeepResultsComputedBeforeStopping() throws Exception {
+        final CancellationToken token = new CancellationToken();
+        final int cancelAt = 70;
+        PartialResult<Long[]> result = sequential.perform(bs, bs[3], BS_SIZE, new ComparisonOp<Long>() {
+            private int calls;
+
+            @Override
+            public Long compute(final MutableBitSet accumulator, final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+                if (++calls == cancelAt) {
+                    token.cancel();
+                }
+                return ImmutableBitSet.andCount(target, toCompare);
+            }
+        }, ExecutionMode.SLICED, token);
+
+        assertFalse(result.isComplete());
+        Long[] counts = result.getResult();
+        assertEquals(bs.length, counts.length);
+        int computed = 2 * CancellationToken.CHECK_INTERVAL;
+        for (int i = 0; i < counts.length; i++) {
+            if (i < computed) {
+                assertEquals(Long.valueOf(ImmutableBitSet.andCount(bs[i], bs[3])), counts[i]);
+            } else {
+                assertNull(counts[i]);
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepSlicesComputedBeforeStopping() throws Exception {
+        final CancellationToken token = new CancellationToken();
+        final AtomicInteger calls = new AtomicInteger();
+        PartialResult<Long[]> result = bitsetOperationsExecutor.perform(bs, bs[3], BS_SIZE, new ComparisonOp<Long>() {
+            @Override
+            public Long compute(final MutableBitSet accumulator, final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+                if (calls.incrementAndGet() == 40) {
+                    token.cancel();
+                }
+                return ImmutableBitSet.andCount(target, toCompare);
+            }
+        }, ExecutionMode.SLICED, token);
+
+        assertFalse(result.isComplete());
+        Long[] counts = result.getResult();
+        assertEquals(bs.length, counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != null) {
+                assertEquals(Long.valueOf(ImmutableBitSet.andCount(bs[i], bs[3])), counts[i]);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNullToken() throws Exception {
+        bitsetOperationsExecutor.perform(bs, BS_SIZE, new OR(), ExecutionMode.SLICED, (CancellationToken) null);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.CostModel;
+import org.apache.lucene.contrib.bitset.Tiling;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CoOccurrenceTest extends AbstractBitsetOperationsExecutorTest {
+    private static final int BS_SIZE = 5000;
+
+    private ImmutableBitSet[] bs;
+    private ImmutableBitSet query;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        Random random = new Random(22L);
+        // not a multiple of the tile
+        bs = TestBitSets.random(random, 19, BS_SIZE, 1500);
+        bs[4] = TestBitSets.random(random, 900, 300);
+        query = TestBitSets.random(random, BS_SIZE, 2500);
+        // tiles of 3 bitsets by one cache line, so that every bitset spans many blocks
+        Tiling tiny = new Tiling(256, 3);
+        bitsetOperationsExecutor = new BitsetOperationsExecutor(threadPool, 1).withParallelism(4).withTiling(tiny);
+    }
+
+    @Test
+    public void shouldCountEveryPair() throws Exception {
+        long[] expected = expected(null);
+        assertArrayEquals(expected, bitsetOperationsExecutor.coOccurrence(bs, null));
+        assertArrayEquals(expected, sequential.coOccurrence(bs, null));
+        int[] ints = bitsetOperationsExecutor.coOccurrence(bs, null, new int[bs.length * bs.length]);
+        for (int cell = 0; cell < expected.length; cell++) {
+            assertEquals(expected[cell], ints[cell]);
+        }
+    }
+
+    @Test
+    public void shouldRestrictCountsToQuery() throws Exception {
+        long[] expected = expected(query);
+        assertArrayEquals(expected, bitsetOperationsExecutor.coOccurrence(bs, query));
+        assertArrayEquals(expected, sequential.coOccurrence(bs, query));
+    }
+
+    @Test
+    public void shouldFollowCostModel() throws Exception {
+        long[] expected = expected(null);
+        Tiling tiny = new Tiling(256, 3);
+        // tasks too expensive to be worth it: nothing is submitted, not even to a pool that would reject it
+        ExecutorService stopped = Executors.newFixedThreadPool(1);
+        stopped.shutdown();
+        BitsetOperationsExecutor costly = new BitsetOperationsExecutor(stopped, 1).withParallelism(4).withTiling(tiny).withCostModel(new CostModel(1.0d, 1.0d, 1.0e15d));
+        assertArrayEquals(expected, costly.coOccurrence(bs, null));
+
+        // cheap tasks, but fewer of them than tiles
+        BitsetOperationsExecutor cheap = new BitsetOperationsExecutor(threadPool, 1).withParallelism(2).withTiling(tiny).withCostModel(new CostModel(1.0d, 1.0d, 1.0d));
+        assertArrayEquals(expected, cheap.coOccurrence(bs, null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectSmallMatrix() throws Exception {
+        bitsetOperationsExecutor.coOccurrence(bs, null, new long[bs.length]);
+    }
+
+    private long[] expected(final ImmutableBitSet restriction) {
+        long[] expected = new long[bs.length * bs.length];
+        for (int a = 0; a < bs.length; a++) {
+            for (int b = 0; b < bs.length; b++) {
+                MutableBitSet both = new MutableBitSet(BS_SIZE);
+                both.or(bs[a]);
+                both.and(bs[b]);
+                if (restriction != null) {
+                    both.and(restriction);
+                }
+                expected[a * bs.length + b] = both.cardinality();
+            }
+        }
+        return expected;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.ComparisonMetrics;
+import org.apache.lucene.contrib.bitset.ops.CompositeComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.Cosine;
+import org.apache.lucene.contrib.bitset.ops.DifferenceCount;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.apache.lucene.contrib.bitset.ops.Jaccard;
+import org.apache.lucene.contrib.bitset.ops.OverlapSimilarity;
+import org.apache.lucene.contrib.bitset.ops.UnionCount;
+import org.apache.lucene.contrib.bitset.ops.WordwiseComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.XorCount;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CompositeComparisonTest extends AbstractBitsetOperationsExecutorTest {
+    private static final int BS_SIZE = 3000;
+
+    private ImmutableBitSet[] bs;
+    private ImmutableBitSet toCompare;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        Random random = new Random(19L);
+        bs = TestBitSets.random(random, 30, BS_SIZE, 800);
+        // shorter than the bitsets it is compared to, and one bitset shorter than it
+        toCompare = TestBitSets.random(random, 2000, 600);
+        bs[7] = TestBitSets.random(random, 500, 100);
+    }
+
+    @Test
+    public void shouldComputeMetricsLikeSeparateComparisons() throws Exception {
+        WordwiseComparisonOp<Long> weighted = new WordwiseComparisonOp<Long>() {
+            @Override
+            public Long compute(final MutableBitSet accumulator, final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public long count(final long targetWord, final long toCompareWord) {
+                // any count of its own, summed word by word
+                return 2L * Long.bitCount(targetWord & ~toCompareWord) + Long.bitCount(targetWord & toCompareWord);
+            }
+
+            @Override
+            public Long valueOf(final long count) {
+                return Long.valueOf(count);
+            }
+        };
+        WordwiseComparisonOp<?>[] counts = new WordwiseComparisonOp<?>[] {new IntersectionCount(), new UnionCount(), weighted, new DifferenceCount(), new XorCount()};
+        OverlapSimilarity[] similarities = new OverlapSimilarity[] {new Jaccard(), new Cosine()};
+        CompositeComparisonOp operation = new CompositeComparisonOp(counts, similarities);
+
+        for (BitsetOperationsExecutor executor : new BitsetOperationsExecutor[] {bitsetOperationsExecutor, sequential}) {
+            ComparisonMetrics metrics = executor.perform(bs, toCompare, BS_SIZE, operation);
+            assertArrayEquals(executor.perform(bs, toCompare, BS_SIZE, new IntersectionCount(), new long[bs.length]), metrics.getCounts(0));
+            assertArrayEquals(executor.perform(bs, toCompare, BS_SIZE, new UnionCount(), new long[bs.length]), metrics.getCounts(1));
+            assertArrayEquals(executor.perform(bs, toCompare, BS_SIZE, new DifferenceCount(), new long[bs.length]), metrics.getCounts(3));
+            assertArrayEquals(executor.perform(bs, toCompare, BS_SIZE, new XorCount(), new long[bs.length]), metrics.getCounts(4));
+            for (int i = 0; i < bs.length; i++) {
+                assertEquals(2L * metrics.getCounts(3)[i] + metrics.getCounts(0)[i], metrics.getCounts(2)[i]);
+                assertEquals(new Jaccard().compute(bs[i], toCompare), metrics.getSimilarities(0)[i], 1e-12);
+                assertEquals(new Cosine().compute(bs[i], toCompare), metrics.getSimilarities(1)[i], 1e-12);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNoMetrics() {
+        new CompositeComparisonOp(new WordwiseComparisonOp<?>[0], new OverlapSimilarity[0]);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.CostModel;
+import org.apache.lucene.contrib.bitset.ExecutionMode;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CostModelTest {
+    private static final int BS_SIZE = 1000;
+
+    private ExecutorService threadPool;
+
+    @Before
+    public void setup() {
+        threadPool = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void teardown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void shouldStaySequentialForSmallWork() {
+        CostModel costModel = new CostModel(1.0d, 1.0d, 10000.0d);
+        assertEquals(1, costModel.associativeParallelism(25000L, 64));
+        assertEquals(1, costModel.comparisonParallelism(100L, 64));
+    }
+
+    @Test
+    public void shouldGoParallelForLargeWork() {
+        CostModel costModel = new CostModel(1.0d, 1.0d, 10000.0d);
+        // 10k bitsets of 100M bits
+        assertEquals(64, costModel.associativeParallelism(10000L * 1562500L, 64));
+        // sqrt(4M / 10k) = 20
+        assertEquals(20, costModel.associativeParallelism(4000000L, 64));
+    }
+
+    @Test
+    public void shouldWeightComparisonsSeparately() {
+        CostModel costModel = new CostModel(1.0d, 4.0d, 10000.0d);
+        assertEquals(20, costModel.associativeParallelism(4000000L, 64));
+        assertEquals(40, costModel.comparisonParallelism(4000000L, 64));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonPositiveCosts() {
+        new CostModel(0.0d, 1.0d, 1.0d);
+    }
+
+    @Test
+    public void shouldCalibrate() throws Exception {
+        CostModel costModel = CostModel.calibrate(threadPool);
+        assertTrue(costModel.getNanosPerWord() > 0.0d);
+        assertTrue(costModel.getNanosPerComparedWord() > 0.0d);
+        assertTrue(costModel.getNanosPerTask() > 0.0d);
+    }
+
+    @Test
+    public void shouldPerformWithCostModel() throws Exception {
+        ImmutableBitSet[] bs = TestBitSets.random(new Random(5L), 100, BS_SIZE, 50);
+        // cheap tasks, so that even this small input goes parallel
+        BitsetOperationsExecutor bitsetOperationsExecutor = new BitsetOperationsExecutor(threadPool).withParallelism(4).withCostModel(new CostModel(1.0d, 1.0d, 1.0d));
+        BitsetOperationsExecutor sequential = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE);
+
+        TestBitSets.assertSameBits(BS_SIZE, sequential.perform(bs, BS_SIZE, new OR()), bitsetOperationsExecutor.perform(bs, BS_SIZE, new OR()));
+        TestBitSets.assertSameBits(BS_SIZE, sequential.perform(bs, BS_SIZE, new OR()), bitsetOperationsExecutor.perform(bs, BS_SIZE, new OR(), ExecutionMode.WORD_RANGE));
+        assertArrayEquals(sequential.perform(bs, bs[1], BS_SIZE, new IntersectionCount()), bitsetOperationsExecutor.perform(bs, bs[1], BS_SIZE, new IntersectionCount()));
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CountPerBitTest extends AbstractBitsetOperationsExecutorTest {
+    // not a multiple of 64, nor of the block of words
+    private static final int BS_SIZE = 9001;
+
+    @Test
+    public void shouldCountBitsetsPerPosition() throws Exception {
+        // odd and even numbers of bitsets, and a count needing every plane
+        for (int n : new int[] {1, 2, 7, 64, 129}) {
+            ImmutableBitSet[] bs = TestBitSets.random(new Random(23L + n), n, BS_SIZE, 6000);
+            bs[0] = TestBitSets.random(new Random(n), 1000, 500);
+            int[] expected = new int[BS_SIZE];
+            for (ImmutableBitSet bitset : bs) {
+                for (int bit = 0; bit < BS_SIZE; bit++) {
+                    expected[bit] += bitset.get(bit) ? 1 : 0;
+                }
+            }
+            assertArrayEquals(expected, bitsetOperationsExecutor.countPerBit(bs, BS_SIZE));
+            assertArrayEquals(expected, sequential.countPerBit(bs, BS_SIZE));
+        }
+    }
+
+    @Test
+    public void shouldCountFullCoverage() throws Exception {
+        ImmutableBitSet all = TestBitSets.of(100, 0, 1, 63, 64, 99);
+        int[] counts = bitsetOperationsExecutor.countPerBit(new ImmutableBitSet[] {all, all, all}, 100);
+        assertEquals(3, counts[63]);
+        assertEquals(3, counts[99]);
+        assertEquals(0, counts[98]);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.ExecutionMode;
+import org.apache.lucene.contrib.bitset.ops.NOT;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DifferenceOperationTest extends AbstractBitsetOperationsExecutorTest {
+    private static final int BS_SIZE = 5000;
+
+    private ImmutableBitSet[] bs;
+    private MutableBitSet expected;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        bs = TestBitSets.random(new Random(17L), 500, BS_SIZE, 8);
+        bs[0] = TestBitSets.random(new Random(18L), BS_SIZE, 4000);
+        expected = new MutableBitSet(BS_SIZE);
+        expected.or(bs[0]);
+        for (int i = 1; i < bs.length; i++) {
+            expected.andNot(bs[i]);
+        }
+    }
+
+    @Test
+    public void shouldSubtractFromTheBase() throws Exception {
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(bs, BS_SIZE, new NOT()));
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.performAsync(bs, BS_SIZE, new NOT()).get());
+    }
+
+    @Test
+    public void shouldSubtractFromTheBaseWithForkJoin() throws Exception {
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            BitsetOperationsExecutor forkJoin = new BitsetOperationsExecutor(forkJoinPool, 1);
+            TestBitSets.assertSameBits(BS_SIZE, expected, forkJoin.perform(bs, BS_SIZE, new NOT(), ExecutionMode.FORK_JOIN));
+            TestBitSets.assertSameBits(BS_SIZE, expected, forkJoin.performAsync(bs, BS_SIZE, new NOT(), ExecutionMode.FORK_JOIN).get());
+        } finally {
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldKeepTheBaseAlone() throws Exception {
+        ImmutableBitSet[] base = new ImmutableBitSet[]{bs[0]};
+        assertEquals(bs[0].cardinality(), bitsetOperationsExecutor.perform(base, BS_SIZE, new NOT()).cardinality());
+    }
+
+    @Test
+    public void shouldSubtractTheBaseFromItself() throws Exception {
+        ImmutableBitSet[] self = new ImmutableBitSet[]{bs[0], bs[1], bs[0]};
+        assertEquals(0L, bitsetOperationsExecutor.perform(self, BS_SIZE, new NOT()).cardinality());
+    }
+}
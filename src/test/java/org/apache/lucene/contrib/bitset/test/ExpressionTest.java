@@ -0,0 +1,153 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.contrib.bitset.Expression;
+import org.apache.lucene.contrib.bitset.ops.WordwiseOp;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.apache.lucene.contrib.bitset.Expression.and;
+import static org.apache.lucene.contrib.bitset.Expression.andNot;
+import static org.apache.lucene.contrib.bitset.Expression.leaf;
+import static org.apache.lucene.contrib.bitset.Expression.or;
+import static org.apache.lucene.contrib.bitset.Expression.xor;
+import static org.junit.Assert.assertEquals;
+
+public class ExpressionTest extends AbstractBitsetOperationsExecutorTest {
+    // not a multiple of the block of words, to exercise the last partial block
+    private static final int BS_SIZE = 10000;
+
+    private ImmutableBitSet[] bs;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        bs = TestBitSets.random(new Random(21L), 6, BS_SIZE, 3000);
+    }
+
+    @Test
+    public void shouldEvaluateLikeSeparateOperations() throws Exception {
+        // (A OR B OR C) AND D AND NOT (E OR F)
+        Expression expression = andNot(and(or(leaf("A", bs[0]), leaf("B", bs[1]), leaf("C", bs[2])), leaf("D", bs[3])), or(leaf("E", bs[4]), leaf("F", bs[5])));
+        MutableBitSet expected = copy(bs[0]);
+        expected.or(bs[1]);
+        expected.or(bs[2]);
+        expected.and(bs[3]);
+        MutableBitSet excluded = copy(bs[4]);
+        excluded.or(bs[5]);
+        expected.andNot(excluded.immutableCopy());
+
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(expression, BS_SIZE));
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.performAsync(expression, BS_SIZE).get());
+        TestBitSets.assertSameBits(BS_SIZE, expected, sequential.perform(expression, BS_SIZE));
+        assertEquals("NOT(AND(OR(A, B, C), D), OR(E, F))", expression.toString());
+    }
+
+    @Test
+    public void shouldCompleteEmptyExpressions() throws Exception {
+        ImmutableBitSet empty = new MutableBitSet(0).immutableCopy();
+        assertEquals(0L, bitsetOperationsExecutor.performAsync(and(leaf(empty), leaf(empty)), 0).get(10, TimeUnit.SECONDS).cardinality());
+        assertEquals(0L, sequential.performAsync(and(leaf(empty), leaf(empty)), 0).get(10, TimeUnit.SECONDS).cardinality());
+    }
+
+    @Test
+    public void shouldEvaluateXorOfSharedSubexpressions() throws Exception {
+        Expression ab = and(leaf(bs[0]), leaf(bs[1]));
+        Expression expression = xor(ab, or(ab, leaf(bs[2])));
+        MutableBitSet abExpected = copy(bs[0]);
+        abExpected.and(bs[1]);
+        MutableBitSet expected = copy(abExpected.immutableCopy());
+        expected.or(bs[2]);
+        expected.xor(abExpected.immutableCopy());
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(expression, BS_SIZE));
+    }
+
+    @Test
+    public void shouldHandleShorterLeaves() throws Exception {
+        ImmutableBitSet shorter = TestBitSets.of(100, 3, 99);
+        Expression expression = or(leaf(bs[0]), and(leaf(shorter), leaf(bs[1])), andNot(leaf(bs[2]), leaf(shorter)));
+        MutableBitSet expected = copy(shorter);
+        expected.and(bs[1]);
+        expected.or(bs[0]);
+        MutableBitSet difference = copy(bs[2]);
+        difference.andNot(shorter);
+        expected.or(difference.immutableCopy());
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(expression, BS_SIZE));
+    }
+
+    @Test
+    public void shouldEvaluateEmptyConjunctions() throws Exception {
+        Expression expression = or(and(leaf(TestBitSets.of(BS_SIZE, 1)), leaf(TestBitSets.of(BS_SIZE, 2)), leaf(bs[0])), leaf(TestBitSets.of(BS_SIZE, 7)));
+        MutableBitSet actual = bitsetOperationsExecutor.perform(expression, BS_SIZE);
+        assertEquals(1L, actual.cardinality());
+        assertEquals(true, actual.get(7));
+    }
+
+    @Test
+    public void shouldReuseKernelsAcrossLeaves() throws Exception {
+        // the same shape twice, the second evaluation must only see its own leaves
+        for (int i = 0; i < 3; i++) {
+            Expression expression = or(and(leaf(bs[i]), leaf(bs[i + 1])), leaf(bs[i + 2]));
+            MutableBitSet expected = copy(bs[i]);
+            expected.and(bs[i + 1]);
+            expected.or(bs[i + 2]);
+            TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(expression, BS_SIZE));
+            TestBitSets.assertSameBits(BS_SIZE, expected, sequential.perform(expression, BS_SIZE));
+        }
+    }
+
+    @Test
+    public void shouldEvaluateOtherWordwiseOps() throws Exception {
+        WordwiseOp union = new WordwiseOp() {
+            @Override
+            public long compute(final long accumulator, final long word) {
+                return accumulator | word;
+            }
+
+            @Override
+            public void compute(final MutableBitSet accumulator, final ImmutableBitSet bitset) {
+                accumulator.or(bitset);
+            }
+        };
+        Expression expression = and(Expression.of(union, leaf(bs[0]), leaf(bs[1])), leaf(bs[2]));
+        MutableBitSet expected = copy(bs[0]);
+        expected.or(bs[1]);
+        expected.and(bs[2]);
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(expression, BS_SIZE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectEmptyNodes() {
+        and();
+    }
+
+    private static MutableBitSet copy(final ImmutableBitSet bitset) {
+        MutableBitSet copy = new MutableBitSet(BS_SIZE);
+        copy.or(bitset);
+        return copy;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.Matches;
+import org.apache.lucene.contrib.bitset.ops.Cosine;
+import org.apache.lucene.contrib.bitset.ops.Dice;
+import org.apache.lucene.contrib.bitset.ops.DoubleComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.apache.lucene.contrib.bitset.ops.Jaccard;
+import org.apache.lucene.contrib.bitset.ops.LongComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.OverlapSimilarity;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FilterTest extends AbstractBitsetOperationsExecutorTest {
+    // spans several blocks of words, so that intersections can be given up early
+    private static final int BS_SIZE = 20000;
+
+    private ImmutableBitSet[] bs;
+    private ImmutableBitSet query;
+    private long[] counts;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        Random random = new Random(17L);
+        bs = new ImmutableBitSet[150];
+        for (int i = 0; i < bs.length; i++) {
+            bs[i] = TestBitSets.random(random, BS_SIZE, 1 + random.nextInt(8000));
+        }
+        query = TestBitSets.random(random, BS_SIZE, 5000);
+        counts = sequential.perform(bs, query, BS_SIZE, new IntersectionCount(), new long[bs.length]);
+    }
+
+    @Test
+    public void shouldFindCountsReachingThreshold() throws Exception {
+        long threshold = 1000L;
+        int[] expected = expected(threshold);
+        // the intersection count is given up a block at a time, any other scorer is computed in full
+        LongComparisonOp opaque = new LongComparisonOp() {
+            @Override
+            public long compute(final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+                return ImmutableBitSet.andCount(target, toCompare);
+            }
+        };
+        for (BitsetOperationsExecutor executor : new BitsetOperationsExecutor[] {bitsetOperationsExecutor, sequential}) {
+            Matches<long[]> matches = executor.filter(bs, query, BS_SIZE, threshold, new IntersectionCount(), true);
+            assertArrayEquals(expected, matches.getIndices());
+            for (int i = 0; i < matches.size(); i++) {
+                assertEquals(counts[matches.getIndices()[i]], matches.getScores()[i]);
+            }
+            assertArrayEquals(expected, executor.filter(bs, query, BS_SIZE, threshold, opaque, false).getIndices());
+        }
+    }
+
+    @Test
+    public void shouldAcceptLambdaScorerWithIntThreshold() throws Exception {
+        Matches<long[]> matches = bitsetOperationsExecutor.filter(bs, query, BS_SIZE, 1000, (target, toCompare) -> ImmutableBitSet.andCount(target, toCompare), false);
+        assertArrayEquals(expected(1000L), matches.getIndices());
+    }
+
+    @Test
+    public void shouldSkipBitsetsBoundedBelowThreshold() throws Exception {
+        long[] cardinalities = new long[bs.length];
+        for (int i = 0; i < bs.length; i++) {
+            cardinalities[i] = bs[i].cardinality();
+        }
+        Matches<long[]> matches = bitsetOperationsExecutor.filter(bs, query, BS_SIZE, 1500L, new IntersectionCount(), false, cardinalities);
+        assertArrayEquals(expected(1500L), matches.getIndices());
+        assertNull(matches.getScores());
+    }
+
+    @Test
+    public void shouldFilterOnDoubleScores() throws Exception {
+        DoubleComparisonOp jaccard = new DoubleComparisonOp() {
+            @Override
+            public double compute(final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+                return (double) ImmutableBitSet.andCount(target, toCompare) / ImmutableBitSet.orCount(target, toCompare);
+            }
+        };
+        Matches<double[]> matches = bitsetOperationsExecutor.filterSimilar(bs, query, BS_SIZE, 0.2d, jaccard, true);
+        int expected = 0;
+        for (int i = 0; i < bs.length; i++) {
+            expected += jaccard.compute(bs[i], query) >= 0.2d ? 1 : 0;
+        }
+        assertEquals(expected, matches.size());
+        for (int i = 0; i < matches.size(); i++) {
+            assertEquals(jaccard.compute(bs[matches.getIndices()[i]], query), matches.getScores()[i], 0.0d);
+        }
+    }
+
+    @Test
+    public void shouldSkipSimilaritiesBoundedBelowThreshold() throws Exception {
+        long[] cardinalities = new long[bs.length];
+        for (int i = 0; i < bs.length; i++) {
+            cardinalities[i] = bs[i].cardinality();
+        }
+        for (OverlapSimilarity similarity : new OverlapSimilarity[] {new Jaccard(), new Dice(), new Cosine()}) {
+            Matches<double[]> expected = sequential.filterSimilar(bs, query, BS_SIZE, 0.12d, similarity, true);
+            Matches<double[]> bounded = bitsetOperationsExecutor.filterSimilar(bs, query, BS_SIZE, 0.12d, similarity, true, cardinalities);
+            assertArrayEquals(expected.getIndices(), bounded.getIndices());
+            assertArrayEquals(expected.getScores(), bounded.getScores(), 0.0d);
+        }
+
+        // the bound is trusted: a bitset said to be empty is never scored
+        int first = sequential.filterSimilar(bs, query, BS_SIZE, 0.12d, new Jaccard(), false).getIndices()[0];
+        cardinalities[first] = 0L;
+        Matches<double[]> matches = bitsetOperationsExecutor.filterSimilar(bs, query, BS_SIZE, 0.12d, new Jaccard(), false, cardinalities);
+        assertTrue(matches.size() > 0);
+        assertTrue(matches.getIndices()[0] > first);
+    }
+
+    @Test
+    public void shouldReturnNoMatches() throws Exception {
+        assertEquals(0, bitsetOperationsExecutor.filter(bs, query, BS_SIZE, BS_SIZE + 1L, new IntersectionCount(), true).size());
+    }
+
+    private int[] expected(final long threshold) {
+        int size = 0;
+        int[] expected = new int[bs.length];
+        for (int i = 0; i < bs.length; i++) {
+            if (counts[i] >= threshold) {
+                expected[size++] = i;
+            }
+        }
+        int[] trimmed = new int[size];
+        System.arraycopy(expected, 0, trimmed, 0, size);
+        return trimmed;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.ExecutionMode;
+import org.apache.lucene.contrib.bitset.ops.AND;
+import org.apache.lucene.contrib.bitset.ops.AssociativeOp;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.apache.lucene.contrib.bitset.ops.XOR;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ForkJoinOperationTest {
+    private static final int BS_SIZE = 1000;
+
+    private ImmutableBitSet[] bs;
+    private ForkJoinPool threadPool;
+    private BitsetOperationsExecutor bitsetOperationsExecutor;
+
+    @Before
+    public void setup() {
+        bs = TestBitSets.random(new Random(42L), 257, BS_SIZE, 900);
+        threadPool = new ForkJoinPool(4);
+        bitsetOperationsExecutor = new BitsetOperationsExecutor(threadPool, 1);
+    }
+
+    @After
+    public void teardown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void shouldOrLikeSequential() throws Exception {
+        assertSameAsSequential(new OR());
+    }
+
+    @Test
+    public void shouldAndLikeSequential() throws Exception {
+        assertSameAsSequential(new AND());
+    }
+
+    @Test
+    public void shouldXorLikeSequential() throws Exception {
+        assertSameAsSequential(new XOR());
+    }
+
+    @Test
+    public void shouldMergeLongerRightHalves() throws Exception {
+        bs[bs.length - 1] = TestBitSets.random(new Random(43L), 2 * BS_SIZE, 1800);
+        for (AssociativeOp operation : new AssociativeOp[]{new OR(), new AND(), new XOR()}) {
+            MutableBitSet expected = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE).perform(bs, BS_SIZE, operation);
+            MutableBitSet actual = bitsetOperationsExecutor.perform(bs, BS_SIZE, operation, ExecutionMode.FORK_JOIN);
+            TestBitSets.assertSameBits(2 * BS_SIZE, expected, actual);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRequireForkJoinPool() throws Exception {
+        ExecutorService cachedThreadPool = Executors.newCachedThreadPool();
+        try {
+            new BitsetOperationsExecutor(cachedThreadPool, 1).perform(bs, BS_SIZE, new OR(), ExecutionMode.FORK_JOIN);
+        } finally {
+            cachedThreadPool.shutdownNow();
+        }
+    }
+
+    private void assertSameAsSequential(final AssociativeOp operation) throws Exception {
+        MutableBitSet expected = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE).perform(bs, BS_SIZE, operation);
+        MutableBitSet actual = bitsetOperationsExecutor.perform(bs, BS_SIZE, operation, ExecutionMode.FORK_JOIN);
+        TestBitSets.assertSameBits(BS_SIZE, expected, actual);
+    }
+}
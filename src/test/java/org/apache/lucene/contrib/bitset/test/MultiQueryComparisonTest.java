@@ -0,0 +1,73 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.Tiling;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.apache.lucene.contrib.bitset.ops.XorCount;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MultiQueryComparisonTest extends AbstractBitsetOperationsExecutorTest {
+    private static final int BS_SIZE = 5000;
+
+    private ImmutableBitSet[] bs;
+    private ImmutableBitSet[] queries;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        Random random = new Random(20L);
+        bs = TestBitSets.random(random, 41, BS_SIZE, 1500);
+        queries = TestBitSets.random(random, 6, BS_SIZE, 1200);
+        // shorter than the corpus
+        queries[2] = TestBitSets.random(random, 700, 300);
+        // blocks of a single cache line, so that every bitset spans many of them
+        Tiling tiny = new Tiling(128, 1);
+        bitsetOperationsExecutor = new BitsetOperationsExecutor(threadPool, 1).withParallelism(4).withTiling(tiny);
+        sequential = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE).withTiling(tiny);
+    }
+
+    @Test
+    public void shouldCountLikeOneQueryAtATime() throws Exception {
+        for (BitsetOperationsExecutor executor : new BitsetOperationsExecutor[] {bitsetOperationsExecutor, sequential}) {
+            long[][] intersections = executor.perform(bs, queries, BS_SIZE, new IntersectionCount());
+            long[][] distances = executor.perform(bs, queries, BS_SIZE, new XorCount());
+            assertEquals(queries.length, intersections.length);
+            for (int q = 0; q < queries.length; q++) {
+                assertArrayEquals(sequential.perform(bs, queries[q], BS_SIZE, new IntersectionCount(), new long[bs.length]), intersections[q]);
+                assertArrayEquals(sequential.perform(bs, queries[q], BS_SIZE, new XorCount(), new long[bs.length]), distances[q]);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNoQueries() throws Exception {
+        bitsetOperationsExecutor.perform(bs, new ImmutableBitSet[0], BS_SIZE, new IntersectionCount());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+
+import org.apache.lucene.contrib.bitset.ops.AND;
+import org.apache.lucene.contrib.bitset.ops.NOT;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.apache.lucene.contrib.bitset.ops.WordwiseOp;
+import org.apache.lucene.contrib.bitset.ops.XOR;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PerformCountTest extends AbstractBitsetOperationsExecutorTest {
+    // not a multiple of the block of words
+    private static final int BS_SIZE = 10000;
+
+    private ImmutableBitSet[] bs;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        bs = TestBitSets.random(new Random(25L), 12, BS_SIZE, 7000);
+        // a shorter bitset, and a duplicate for XOR to cancel
+        bs[3] = TestBitSets.random(new Random(3L), 1500, 900);
+        bs[8] = bs[1];
+    }
+
+    @Test
+    public void shouldCountLikeCardinalityOfResult() throws Exception {
+        for (WordwiseOp operation : new WordwiseOp[] {new AND(), new OR(), new XOR(), new NOT()}) {
+            long expected = sequential.perform(bs, BS_SIZE, operation).cardinality();
+            assertEquals(expected, bitsetOperationsExecutor.performCount(bs, BS_SIZE, operation));
+            assertEquals(expected, sequential.performCount(bs, BS_SIZE, operation));
+        }
+    }
+
+    @Test
+    public void shouldCountSingleBitset() throws Exception {
+        assertEquals(bs[0].cardinality(), bitsetOperationsExecutor.performCount(new ImmutableBitSet[] {bs[0]}, BS_SIZE, new AND()));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+
+import org.apache.lucene.contrib.bitset.ops.DoubleComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.IntComparisonOp;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class PrimitiveComparisonTest extends AbstractBitsetOperationsExecutorTest {
+    private static final int BS_SIZE = 5000;
+
+    private ImmutableBitSet[] bs;
+    private ImmutableBitSet toCompare;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        Random random = new Random(15L);
+        bs = TestBitSets.random(random, 37, BS_SIZE, 1000);
+        toCompare = TestBitSets.random(random, BS_SIZE, 2000);
+    }
+
+    @Test
+    public void shouldWriteCountsLikeBoxedComparison() throws Exception {
+        Long[] expected = bitsetOperationsExecutor.perform(bs, toCompare, BS_SIZE, new IntersectionCount());
+        long[] result = new long[bs.length];
+        assertSame(result, bitsetOperationsExecutor.perform(bs, toCompare, BS_SIZE, new IntersectionCount(), result));
+        for (int i = 0; i < bs.length; i++) {
+            assertEquals(expected[i].longValue(), result[i]);
+        }
+        assertArrayEquals(result, sequential.perform(bs, toCompare, BS_SIZE, new IntersectionCount(), new long[bs.length]));
+    }
+
+    @Test
+    public void shouldWriteIntsAndDoubles() throws Exception {
+        IntComparisonOp count = new IntComparisonOp() {
+            @Override
+            public int compute(final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+                return (int) target.cardinality();
+            }
+        };
+        DoubleComparisonOp jaccard = new DoubleComparisonOp() {
+            @Override
+            public double compute(final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+                return (double) ImmutableBitSet.andCount(target, toCompare) / ImmutableBitSet.orCount(target, toCompare);
+            }
+        };
+        int[] counts = bitsetOperationsExecutor.perform(bs, toCompare, BS_SIZE, count, new int[bs.length + 2]);
+        double[] scores = bitsetOperationsExecutor.perform(bs, toCompare, BS_SIZE, jaccard, new double[bs.length]);
+        for (int i = 0; i < bs.length; i++) {
+            assertEquals(bs[i].cardinality(), counts[i]);
+            assertEquals(jaccard.compute(bs[i], toCompare), scores[i], 0.0d);
+        }
+        // the elements past the input array are left alone
+        assertEquals(0, counts[bs.length]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectShortResults() throws Exception {
+        bitsetOperationsExecutor.perform(bs, toCompare, BS_SIZE, new IntersectionCount(), new long[bs.length - 1]);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+
+import org.apache.lucene.contrib.bitset.Expression;
+import org.apache.lucene.contrib.bitset.QueryPlan;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.apache.lucene.contrib.bitset.Expression.and;
+import static org.apache.lucene.contrib.bitset.Expression.andNot;
+import static org.apache.lucene.contrib.bitset.Expression.leaf;
+import static org.apache.lucene.contrib.bitset.Expression.or;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QueryPlanTest extends AbstractBitsetOperationsExecutorTest {
+    private static final int BS_SIZE = 100000;
+
+    private ImmutableBitSet dense;
+    private ImmutableBitSet medium;
+    private ImmutableBitSet sparse;
+    private ImmutableBitSet excluded;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        Random random = new Random(23L);
+        dense = TestBitSets.random(random, BS_SIZE, 60000);
+        medium = TestBitSets.random(random, BS_SIZE, 20000);
+        sparse = TestBitSets.random(random, BS_SIZE, 50);
+        excluded = TestBitSets.random(random, BS_SIZE, 30000);
+    }
+
+    @Test
+    public void shouldEvaluateLikeTheExpression() throws Exception {
+        Expression expression = and(or(leaf(dense), leaf(sparse)), andNot(leaf(medium), leaf(excluded)), leaf(dense));
+        QueryPlan plan = bitsetOperationsExecutor.plan(expression, BS_SIZE);
+        MutableBitSet expected = bitsetOperationsExecutor.perform(expression, BS_SIZE);
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(plan));
+        assertEquals(expected.cardinality(), plan.getActualCardinality());
+    }
+
+    @Test
+    public void shouldOrderConjunctionsSparsestFirst() {
+        QueryPlan plan = bitsetOperationsExecutor.plan(and(leaf("dense", dense), leaf("medium", medium), leaf("sparse", sparse)), BS_SIZE);
+        assertEquals("AND(sparse, medium, dense)", plan.getPlannedExpression().toString());
+    }
+
+    @Test
+    public void shouldHoistExclusions() {
+        Expression expression = and(leaf("dense", dense), andNot(and(leaf("medium", medium), leaf("sparse", sparse)), leaf("excluded", excluded)));
+        QueryPlan plan = bitsetOperationsExecutor.plan(expression, BS_SIZE);
+        assertEquals("NOT(AND(sparse, medium, dense), excluded)", plan.getPlannedExpression().toString());
+    }
+
+    @Test
+    public void shouldIterateVerySparseConjunctions() throws Exception {
+        Expression expression = and(leaf("dense", dense), leaf("sparse", sparse));
+        QueryPlan plan = bitsetOperationsExecutor.plan(expression, BS_SIZE);
+        assertTrue(plan.explain(), plan.explain().contains("AND sparse"));
+
+        MutableBitSet expected = new MutableBitSet(BS_SIZE);
+        expected.or(dense);
+        expected.and(sparse);
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(plan));
+    }
+
+    @Test
+    public void shouldFoldDenseConjunctions() {
+        QueryPlan plan = bitsetOperationsExecutor.plan(and(leaf("dense", dense), leaf("medium", medium)), BS_SIZE);
+        assertTrue(plan.explain(), plan.explain().contains("AND dense"));
+        assertEquals(Math.round(BS_SIZE * (dense.cardinality() / (double) BS_SIZE) * (medium.cardinality() / (double) BS_SIZE)), plan.getEstimatedCardinality());
+    }
+
+    @Test
+    public void shouldShareKernelsWithUnplannedExpressions() throws Exception {
+        MutableBitSet expected = bitsetOperationsExecutor.perform(and(leaf(medium), leaf(dense)), BS_SIZE);
+        QueryPlan plan = bitsetOperationsExecutor.plan(and(leaf("medium", medium), leaf("dense", dense)), BS_SIZE);
+        TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(plan));
+        assertEquals(expected.cardinality(), plan.getActualCardinality());
+    }
+
+    @Test
+    public void shouldExplainEstimatesAndActuals() throws Exception {
+        Expression expression = or(leaf("medium", medium, medium.cardinality()), leaf("dense", dense, dense.cardinality()));
+        QueryPlan plan = bitsetOperationsExecutor.plan(expression, BS_SIZE);
+        assertTrue(plan.explain(), plan.explain().contains("not executed"));
+        assertFalse(plan.explain(), plan.explain().contains("counted"));
+        assertEquals(-1L, plan.getActualCardinality());
+
+        bitsetOperationsExecutor.perform(plan);
+        String explain = plan.explain();
+        assertTrue(explain, explain.startsWith("plan of OR(medium, dense)"));
+        assertTrue(explain, explain.contains("OR dense"));
+        assertTrue(explain, explain.contains("actual.cardinality="));
+        assertTrue(explain, plan.getElapsedNanos() > 0L);
+    }
+}
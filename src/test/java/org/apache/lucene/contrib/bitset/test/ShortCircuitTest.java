@@ -0,0 +1,96 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.ExecutionMode;
+import org.apache.lucene.contrib.bitset.ops.AND;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ShortCircuitTest extends AbstractBitsetOperationsExecutorTest {
+    private static final int BS_SIZE = 1000;
+
+    @Test
+    public void shouldAndToEmpty() throws Exception {
+        ImmutableBitSet[] bs = TestBitSets.random(new Random(5L), 300, BS_SIZE, 600);
+        bs[150] = TestBitSets.of(BS_SIZE, 1, 2, 3);
+        bs[151] = TestBitSets.of(BS_SIZE, 4, 5, 6);
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.SLICED, ExecutionMode.WORD_RANGE, ExecutionMode.TILED}) {
+            assertEquals(mode.toString(), 0L, bitsetOperationsExecutor.perform(bs, BS_SIZE, new AND(), mode).cardinality());
+            assertEquals(mode.toString(), 0L, bitsetOperationsExecutor.performAsync(bs, BS_SIZE, new AND(), mode).get().cardinality());
+        }
+        assertEquals(0L, sequential.perform(bs, BS_SIZE, new AND()).cardinality());
+    }
+
+    @Test
+    public void shouldAndToEmptyWithForkJoin() throws Exception {
+        ImmutableBitSet[] bs = TestBitSets.random(new Random(7L), 300, BS_SIZE, 600);
+        bs[10] = TestBitSets.of(BS_SIZE, 999);
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            assertEquals(0L, new BitsetOperationsExecutor(forkJoinPool, 1).perform(bs, BS_SIZE, new AND(), ExecutionMode.FORK_JOIN).cardinality());
+        } finally {
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldAndLikeWithoutShortCircuit() throws Exception {
+        // dense enough that the result is not empty
+        ImmutableBitSet[] bs = TestBitSets.random(new Random(9L), 6, BS_SIZE, 3000);
+        MutableBitSet expected = new MutableBitSet(BS_SIZE);
+        expected.or(bs[0]);
+        for (int i = 1; i < bs.length; i++) {
+            expected.and(bs[i]);
+        }
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.SLICED, ExecutionMode.WORD_RANGE, ExecutionMode.TILED}) {
+            TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.perform(bs, BS_SIZE, new AND(), mode));
+        }
+        TestBitSets.assertSameBits(BS_SIZE, expected, sequential.perform(bs, BS_SIZE, new AND()));
+    }
+
+    @Test
+    public void shouldSkipBitsetsAfterEmpty() throws Exception {
+        // bitsets after the first empty tile are never read, so they can be missing
+        ImmutableBitSet[] bs = new ImmutableBitSet[64];
+        for (int i = 0; i < 8; i++) {
+            bs[i] = TestBitSets.of(BS_SIZE, i);
+        }
+        assertEquals(0L, sequential.perform(bs, BS_SIZE, new AND()).cardinality());
+        assertEquals(0L, bitsetOperationsExecutor.perform(bs, BS_SIZE, new AND(), ExecutionMode.WORD_RANGE).cardinality());
+        assertEquals(0L, bitsetOperationsExecutor.perform(bs, BS_SIZE, new AND(), ExecutionMode.TILED).cardinality());
+    }
+
+    @Test
+    public void shouldStopAfterShorterBitset() throws Exception {
+        // the first bitset moves the cursor to its last word, the second one has fewer words than that
+        ImmutableBitSet[] bs = new ImmutableBitSet[8];
+        bs[0] = TestBitSets.of(BS_SIZE, BS_SIZE - 1);
+        bs[1] = TestBitSets.of(64, 1);
+        assertEquals(0L, sequential.perform(bs, BS_SIZE, new AND()).cardinality());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.CostModel;
+import org.apache.lucene.contrib.bitset.PairListener;
+import org.apache.lucene.contrib.bitset.ops.Jaccard;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class SimilarityJoinTest extends AbstractBitsetOperationsExecutorTest {
+    // spans several blocks of words, so that intersections can be given up early
+    private static final int BS_SIZE = 10000;
+
+    private ImmutableBitSet[] bs;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        Random random = new Random(21L);
+        // clusters of bitsets close to each other, more than one block of rows of them
+        bs = new ImmutableBitSet[600];
+        ImmutableBitSet center = null;
+        for (int i = 0; i < bs.length; i++) {
+            if (i % 10 == 0) {
+                center = TestBitSets.random(random, BS_SIZE, 20 + random.nextInt(2000));
+            }
+            MutableBitSet near = new MutableBitSet(BS_SIZE);
+            near.or(center);
+            for (int flips = random.nextInt(1 + (int) center.cardinality() / 3); flips > 0; flips--) {
+                int bit = random.nextInt(BS_SIZE);
+                if (near.get(bit)) {
+                    near.clear(bit);
+                } else {
+                    near.set(bit);
+                }
+            }
+            bs[i] = near.immutableCopy();
+        }
+        bs[5] = TestBitSets.of(BS_SIZE);
+        bs[6] = bs[7];
+    }
+
+    @Test
+    public void shouldFindPairsLikeAllComparisons() throws Exception {
+        for (double threshold : new double[] {0.3d, 0.6d, 0.9d, 1.0d}) {
+            Map<String, Double> expected = new HashMap<String, Double>();
+            Jaccard jaccard = new Jaccard();
+            for (int i = 0; i < bs.length; i++) {
+                for (int j = i + 1; j < bs.length; j++) {
+                    double similarity = jaccard.compute(bs[i], bs[j]);
+                    if (similarity >= threshold) {
+                        expected.put(i + "," + j, similarity);
+                    }
+                }
+            }
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, join(bitsetOperationsExecutor, threshold));
+            assertEquals(expected, join(sequential, threshold));
+        }
+    }
+
+    @Test
+    public void shouldFollowCostModel() throws Exception {
+        // tasks too expensive to be worth it: the join stays in the calling thread
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        BitsetOperationsExecutor costly = new BitsetOperationsExecutor(threadPool, 1).withParallelism(4).withCostModel(new CostModel(1.0d, 1.0d, 1.0e15d));
+        costly.similarityJoin(bs, 0.6d, new PairListener() {
+            @Override
+            public void pair(final int first, final int second, final double similarity) {
+                threads.add(Thread.currentThread());
+            }
+        });
+        assertEquals(Collections.singleton(Thread.currentThread()), threads);
+
+        // cheap tasks, but fewer of them than blocks of rows
+        BitsetOperationsExecutor cheap = new BitsetOperationsExecutor(threadPool, 1).withParallelism(2).withCostModel(new CostModel(1.0d, 1.0d, 1.0d));
+        assertEquals(join(sequential, 0.6d), join(cheap, 0.6d));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectZeroThreshold() throws Exception {
+        join(bitsetOperationsExecutor, 0.0d);
+    }
+
+    private Map<String, Double> join(final BitsetOperationsExecutor executor, final double threshold) throws Exception {
+        final Map<String, Double> pairs = Collections.synchronizedMap(new HashMap<String, Double>());
+        executor.similarityJoin(bs, threshold, new PairListener() {
+            @Override
+            public void pair(final int first, final int second, final double similarity) {
+                pairs.put(first + "," + second, similarity);
+            }
+        });
+        return pairs;
+    }
+}
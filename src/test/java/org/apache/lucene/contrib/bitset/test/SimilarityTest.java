@@ -0,0 +1,105 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+
+import org.apache.lucene.contrib.bitset.ops.Cosine;
+import org.apache.lucene.contrib.bitset.ops.DifferenceCount;
+import org.apache.lucene.contrib.bitset.ops.Dice;
+import org.apache.lucene.contrib.bitset.ops.Jaccard;
+import org.apache.lucene.contrib.bitset.ops.OverlapCoefficient;
+import org.apache.lucene.contrib.bitset.ops.OverlapSimilarity;
+import org.apache.lucene.contrib.bitset.ops.Tanimoto;
+import org.apache.lucene.contrib.bitset.ops.UnionCount;
+import org.apache.lucene.contrib.bitset.ops.XorCount;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SimilarityTest extends AbstractBitsetOperationsExecutorTest {
+    private static final int BS_SIZE = 3000;
+    private static final double DELTA = 1e-12;
+
+    private ImmutableBitSet[] bs;
+    private ImmutableBitSet toCompare;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        Random random = new Random(18L);
+        bs = TestBitSets.random(random, 25, BS_SIZE, 900);
+        // shorter than the bitsets it is compared to
+        toCompare = TestBitSets.random(random, 1000, 400);
+        bs[3] = TestBitSets.of(BS_SIZE);
+    }
+
+    @Test
+    public void shouldCountLikeTemporaryBitsets() throws Exception {
+        long[] union = bitsetOperationsExecutor.perform(bs, toCompare, BS_SIZE, new UnionCount(), new long[bs.length]);
+        long[] difference = bitsetOperationsExecutor.perform(bs, toCompare, BS_SIZE, new DifferenceCount(), new long[bs.length]);
+        long[] xor = bitsetOperationsExecutor.perform(bs, toCompare, BS_SIZE, new XorCount(), new long[bs.length]);
+        for (int i = 0; i < bs.length; i++) {
+            MutableBitSet expected = copy(bs[i]);
+            expected.or(toCompare);
+            assertEquals(expected.cardinality(), union[i]);
+            expected = copy(bs[i]);
+            expected.andNot(toCompare);
+            assertEquals(expected.cardinality(), difference[i]);
+            expected = copy(bs[i]);
+            expected.xor(toCompare);
+            assertEquals(expected.cardinality(), xor[i]);
+        }
+    }
+
+    @Test
+    public void shouldComputeSimilarities() {
+        assertEquals(2.0d / 6.0d, new Jaccard().similarity(2L, 4L, 4L), DELTA);
+        assertEquals(2.0d / 6.0d, new Tanimoto().similarity(2L, 4L, 4L), DELTA);
+        assertEquals(4.0d / 8.0d, new Dice().similarity(2L, 4L, 4L), DELTA);
+        assertEquals(2.0d / Math.sqrt(8.0d), new Cosine().similarity(2L, 2L, 4L), DELTA);
+        assertEquals(2.0d / 2.0d, new OverlapCoefficient().similarity(2L, 2L, 4L), DELTA);
+        assertEquals(0.0d, new Jaccard().similarity(0L, 0L, 0L), 0.0d);
+        assertEquals(0.0d, new Cosine().similarity(0L, 0L, 5L), 0.0d);
+    }
+
+    @Test
+    public void shouldFuseSimilaritiesInExecutor() throws Exception {
+        for (OverlapSimilarity similarity : new OverlapSimilarity[] {new Jaccard(), new Tanimoto(), new Dice(), new Cosine(), new OverlapCoefficient()}) {
+            double[] fused = bitsetOperationsExecutor.perform(bs, toCompare, BS_SIZE, similarity, new double[bs.length]);
+            Double[] boxed = bitsetOperationsExecutor.perform(bs, toCompare, BS_SIZE, similarity);
+            for (int i = 0; i < bs.length; i++) {
+                assertEquals(similarity.compute(bs[i], toCompare), fused[i], DELTA);
+                assertEquals(fused[i], boxed[i].doubleValue(), DELTA);
+            }
+            assertEquals(0.0d, fused[3], 0.0d);
+        }
+    }
+
+    private static MutableBitSet copy(final ImmutableBitSet bitset) {
+        MutableBitSet copy = new MutableBitSet(BS_SIZE);
+        copy.or(bitset);
+        return copy;
+    }
+}
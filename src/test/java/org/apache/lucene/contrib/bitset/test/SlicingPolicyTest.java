@@ -0,0 +1,116 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.SlicingPolicies;
+import org.apache.lucene.contrib.bitset.SlicingPolicy;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class SlicingPolicyTest {
+    private static final int BS_SIZE = 1000;
+
+    private ImmutableBitSet[] bs;
+    private ExecutorService threadPool;
+
+    @Before
+    public void setup() {
+        bs = TestBitSets.random(new Random(3L), 10, BS_SIZE, 50);
+        threadPool = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void teardown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void shouldSliceInFixedCount() {
+        assertArrayEquals(new int[] { 0, 3, 6, 10 }, SlicingPolicies.fixedCount().slice(bs, 3));
+        assertArrayEquals(new int[] { 0, 5, 10 }, SlicingPolicies.fixedCount(2).slice(bs, 3));
+    }
+
+    @Test
+    public void shouldNotSliceMoreThanTheBitsets() {
+        assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 }, SlicingPolicies.fixedCount().slice(bs, 64));
+    }
+
+    @Test
+    public void shouldSliceInFixedSize() {
+        assertArrayEquals(new int[] { 0, 4, 8, 10 }, SlicingPolicies.fixedSize(4).slice(bs, 3));
+    }
+
+    @Test
+    public void shouldSliceByWordCount() {
+        ImmutableBitSet[] uneven = new ImmutableBitSet[] { TestBitSets.of(64 * 90, 1), TestBitSets.of(64, 1), TestBitSets.of(64, 1), TestBitSets.of(64 * 8, 1), TestBitSets.of(64 * 90, 1) };
+        assertArrayEquals(new int[] { 0, 4, 5 }, SlicingPolicies.wordCountWeighted().slice(uneven, 2));
+    }
+
+    @Test
+    public void shouldSliceByCardinality() {
+        ImmutableBitSet[] uneven = new ImmutableBitSet[] { TestBitSets.of(BS_SIZE, 1, 2, 3, 4, 5, 6, 7, 8), TestBitSets.of(BS_SIZE), TestBitSets.of(BS_SIZE, 1), TestBitSets.of(BS_SIZE, 1, 2, 3, 4, 5, 6) };
+        assertArrayEquals(new int[] { 0, 1, 4 }, SlicingPolicies.cardinalityWeighted().slice(uneven, 2));
+    }
+
+    @Test
+    public void shouldSliceGuided() {
+        assertArrayEquals(new int[] { 0, 4, 6, 8, 9, 10 }, SlicingPolicies.guided(1).slice(bs, 3));
+        assertArrayEquals(new int[] { 0, 4, 6, 8, 10 }, SlicingPolicies.guided(2).slice(bs, 3));
+    }
+
+    @Test
+    public void shouldPerformWithMoreParallelismThanBitsets() throws Exception {
+        MutableBitSet expected = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE).perform(bs, BS_SIZE, new OR());
+        MutableBitSet actual = new BitsetOperationsExecutor(threadPool, 1).withParallelism(64).perform(bs, BS_SIZE, new OR());
+        TestBitSets.assertSameBits(BS_SIZE, expected, actual);
+    }
+
+    @Test
+    public void shouldPerformWithEveryPolicy() throws Exception {
+        Long[] expected = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE).perform(bs, bs[0], BS_SIZE, new IntersectionCount());
+        SlicingPolicy[] policies = new SlicingPolicy[] { SlicingPolicies.fixedCount(), SlicingPolicies.fixedCount(7), SlicingPolicies.fixedSize(3), SlicingPolicies.wordCountWeighted(), SlicingPolicies.cardinalityWeighted(), SlicingPolicies.guided(1) };
+        for (SlicingPolicy policy : policies) {
+            BitsetOperationsExecutor bitsetOperationsExecutor = new BitsetOperationsExecutor(threadPool, 1).withParallelism(4).withSlicingPolicy(policy);
+            assertArrayEquals(expected, bitsetOperationsExecutor.perform(bs, bs[0], BS_SIZE, new IntersectionCount()));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectInvalidBounds() throws Exception {
+        new BitsetOperationsExecutor(threadPool, 1).withSlicingPolicy(new SlicingPolicy() {
+            @Override
+            public int[] slice(final ImmutableBitSet[] bs, final int parallelism) {
+                return new int[] { 0, 5, 5, bs.length };
+            }
+        }).perform(bs, BS_SIZE, new OR());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.StructuredExecutorService;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StructuredExecutorServiceTest {
+    private static final int BS_SIZE = 1000;
+
+    private StructuredExecutorService threadPool;
+
+    @Before
+    public void setup() {
+        threadPool = new StructuredExecutorService(2);
+    }
+
+    @After
+    public void teardown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void shouldBackBitsetOperationsExecutor() throws Exception {
+        ImmutableBitSet[] bs = TestBitSets.random(new Random(13L), 30, BS_SIZE, 40);
+        BitsetOperationsExecutor sequential = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE);
+        BitsetOperationsExecutor bitsetOperationsExecutor = new BitsetOperationsExecutor(threadPool, 1).withParallelism(threadPool.getMaxParallelism());
+
+        TestBitSets.assertSameBits(BS_SIZE, sequential.perform(bs, BS_SIZE, new OR()), bitsetOperationsExecutor.perform(bs, BS_SIZE, new OR()));
+        TestBitSets.assertSameBits(BS_SIZE, sequential.perform(bs, BS_SIZE, new OR()), bitsetOperationsExecutor.performAsync(bs, BS_SIZE, new OR()).get());
+        assertArrayEquals(sequential.perform(bs, bs[0], BS_SIZE, new IntersectionCount()), bitsetOperationsExecutor.perform(bs, bs[0], BS_SIZE, new IntersectionCount()));
+    }
+
+    @Test
+    public void shouldBoundParallelism() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < 16; i++) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    int now = running.incrementAndGet();
+                    maxRunning.accumulateAndGet(now, Math::max);
+                    Thread.sleep(5L);
+                    running.decrementAndGet();
+                    return null;
+                }
+            });
+        }
+        threadPool.invokeAll(tasks);
+        assertTrue(maxRunning.get() <= 2);
+        assertEquals(0, running.get());
+    }
+
+    @Test
+    public void shouldCancelSiblingsOnFailure() throws Exception {
+        final AtomicInteger interrupted = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                try {
+                    Thread.sleep(60000L);
+                } catch (InterruptedException e) {
+                    interrupted.incrementAndGet();
+                    throw e;
+                }
+                return null;
+            }
+        });
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Thread.sleep(20L);
+                throw new IllegalStateException("failing on purpose");
+            }
+        });
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        });
+
+        long startAt = System.currentTimeMillis();
+        List<Future<Void>> futures = threadPool.invokeAll(tasks);
+        assertTrue(System.currentTimeMillis() - startAt < 30000L);
+        assertEquals(1, interrupted.get());
+        assertTrue(futures.get(0).isCancelled());
+        try {
+            futures.get(1).get();
+            fail("expected an ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        // the third task never got a permit before the failure
+        try {
+            futures.get(2).get();
+            fail("expected a CancellationException");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+}
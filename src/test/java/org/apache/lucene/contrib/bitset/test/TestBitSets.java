@@ -0,0 +1,64 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+
+final class TestBitSets {
+
+    private TestBitSets() {
+        // empty
+    }
+
+    static ImmutableBitSet[] random(final Random random, final int count, final int size, final int bitsPerSet) {
+        ImmutableBitSet[] bs = new ImmutableBitSet[count];
+        for (int i = 0; i < count; i++) {
+            bs[i] = random(random, size, bitsPerSet);
+        }
+        return bs;
+    }
+
+    static ImmutableBitSet random(final Random random, final int size, final int bitsPerSet) {
+        MutableBitSet mutableBitSet = new MutableBitSet(size);
+        for (int b = 0; b < bitsPerSet; b++) {
+            mutableBitSet.setQuick(random.nextInt(size));
+        }
+        return mutableBitSet.immutableCopy();
+    }
+
+    static ImmutableBitSet of(final int size, final int... bits) {
+        MutableBitSet mutableBitSet = new MutableBitSet(size);
+        for (int bit : bits) {
+            mutableBitSet.setQuick(bit);
+        }
+        return mutableBitSet.immutableCopy();
+    }
+
+    static void assertSameBits(final int size, final MutableBitSet expected, final MutableBitSet actual) {
+        for (int i = 0; i < size; i++) {
+            if (expected.get(i) != actual.get(i)) {
+                throw new AssertionError("bit " + i + " expected " + expected.get(i) + " but was " + actual.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ThresholdOperationTest extends AbstractBitsetOperationsExecutorTest {
+    // not a multiple of 64, nor of the block of words
+    private static final int BS_SIZE = 9001;
+
+    private ImmutableBitSet[] bs;
+    private int[] counts;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        bs = TestBitSets.random(new Random(24L), 9, BS_SIZE, 5000);
+        bs[2] = TestBitSets.random(new Random(2L), 700, 400);
+        counts = sequential.countPerBit(bs, BS_SIZE);
+    }
+
+    @Test
+    public void shouldKeepPositionsSetInAtLeastK() throws Exception {
+        for (int k = 1; k <= bs.length + 1; k++) {
+            MutableBitSet expected = new MutableBitSet(BS_SIZE);
+            for (int bit = 0; bit < BS_SIZE; bit++) {
+                if (counts[bit] >= k) {
+                    expected.set(bit);
+                }
+            }
+            TestBitSets.assertSameBits(BS_SIZE, expected, bitsetOperationsExecutor.atLeast(bs, BS_SIZE, k));
+            TestBitSets.assertSameBits(BS_SIZE, expected, sequential.atLeast(bs, BS_SIZE, k));
+        }
+    }
+
+    @Test
+    public void shouldKeepPositionsSetInExactlyK() throws Exception {
+        for (int k = 0; k <= bs.length; k++) {
+            MutableBitSet expected = new MutableBitSet(BS_SIZE);
+            for (int bit = 0; bit < BS_SIZE; bit++) {
+                if (counts[bit] == k) {
+                    expected.set(bit);
+                }
+            }
+            MutableBitSet actual = bitsetOperationsExecutor.exactly(bs, BS_SIZE, k);
+            TestBitSets.assertSameBits(BS_SIZE, expected, actual);
+            assertEquals(expected.cardinality(), actual.cardinality());
+            TestBitSets.assertSameBits(BS_SIZE, expected, sequential.exactly(bs, BS_SIZE, k));
+        }
+    }
+
+    @Test
+    public void shouldKeepMajority() throws Exception {
+        TestBitSets.assertSameBits(BS_SIZE, bitsetOperationsExecutor.atLeast(bs, BS_SIZE, 5), bitsetOperationsExecutor.majority(bs, BS_SIZE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectZeroK() throws Exception {
+        bitsetOperationsExecutor.atLeast(bs, BS_SIZE, 0);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.ExecutionMode;
+import org.apache.lucene.contrib.bitset.Tiling;
+import org.apache.lucene.contrib.bitset.ops.AND;
+import org.apache.lucene.contrib.bitset.ops.AssociativeOp;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.apache.lucene.contrib.bitset.ops.NOT;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.apache.lucene.contrib.bitset.ops.XOR;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TiledOperationTest {
+    private static final int BS_SIZE = 5000;
+
+    private ImmutableBitSet[] bs;
+    private ExecutorService threadPool;
+    private BitsetOperationsExecutor bitsetOperationsExecutor;
+
+    @Before
+    public void setup() {
+        bs = TestBitSets.random(new Random(7L), 50, BS_SIZE, 200);
+        threadPool = Executors.newCachedThreadPool();
+        // 32 words per tile, 3 bitsets per tile
+        bitsetOperationsExecutor = new BitsetOperationsExecutor(threadPool, 1).withTiling(new Tiling(1024, 3));
+    }
+
+    @After
+    public void teardown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void shouldShapeTilesFromCacheBudget() {
+        Tiling tiling = new Tiling(1024, 3);
+        assertEquals(3, tiling.getBitsetsPerTile());
+        assertEquals(32, tiling.getWordsPerTile());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTooSmallCacheBudget() {
+        new Tiling(64, 8);
+    }
+
+    @Test
+    public void shouldOrLikeSequential() throws Exception {
+        assertSameAsSequential(new OR());
+    }
+
+    @Test
+    public void shouldAndLikeSequential() throws Exception {
+        assertSameAsSequential(new AND());
+    }
+
+    @Test
+    public void shouldXorLikeSequential() throws Exception {
+        assertSameAsSequential(new XOR());
+    }
+
+    @Test
+    public void shouldAndNotLikeSequential() throws Exception {
+        assertSameAsSequential(new NOT());
+    }
+
+    @Test
+    public void shouldIntersectLikeSequential() throws Exception {
+        ImmutableBitSet toCompare = bs[3];
+        Long[] expected = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE).perform(bs, toCompare, BS_SIZE, new IntersectionCount());
+        Long[] actual = bitsetOperationsExecutor.perform(bs, toCompare, BS_SIZE, new IntersectionCount(), ExecutionMode.TILED);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotCompareWordRanges() throws Exception {
+        bitsetOperationsExecutor.perform(bs, bs[0], BS_SIZE, new IntersectionCount(), ExecutionMode.WORD_RANGE);
+    }
+
+    private void assertSameAsSequential(final AssociativeOp operation) throws Exception {
+        MutableBitSet expected = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE).perform(bs, BS_SIZE, operation);
+        MutableBitSet actual = bitsetOperationsExecutor.perform(bs, BS_SIZE, operation, ExecutionMode.TILED);
+        TestBitSets.assertSameBits(BS_SIZE, expected, actual);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.contrib.bitset.TopK;
+import org.apache.lucene.contrib.bitset.ops.IntersectionCount;
+import org.apache.lucene.contrib.bitset.ops.LongComparisonOp;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TopKTest extends AbstractBitsetOperationsExecutorTest {
+    private static final int BS_SIZE = 4000;
+
+    private ImmutableBitSet[] bs;
+    private ImmutableBitSet query;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        super.setup();
+        Random random = new Random(16L);
+        bs = new ImmutableBitSet[200];
+        for (int i = 0; i < bs.length; i++) {
+            // cardinalities spread out, so that bounds can prune
+            bs[i] = TestBitSets.random(random, BS_SIZE, 1 + random.nextInt(1500));
+        }
+        query = TestBitSets.random(random, BS_SIZE, 2000);
+    }
+
+    @Test
+    public void shouldFindLargestOverlaps() throws Exception {
+        long[] counts = sequential.perform(bs, query, BS_SIZE, new IntersectionCount(), new long[bs.length]);
+        TopK topK = bitsetOperationsExecutor.topK(bs, query, BS_SIZE, 10, new IntersectionCount());
+        assertEquals(10, topK.size());
+        for (int rank = 0; rank < topK.size(); rank++) {
+            assertEquals(counts[topK.getIndex(rank)], topK.getScore(rank));
+            if (rank > 0) {
+                assertTrue(topK.getScore(rank - 1) >= topK.getScore(rank));
+            }
+        }
+        // no bitset left out scores above the last one kept
+        long last = topK.getScore(topK.size() - 1);
+        int above = 0;
+        for (long count : counts) {
+            above += count > last ? 1 : 0;
+        }
+        assertTrue(above < 10);
+
+        TopK single = sequential.topK(bs, query, BS_SIZE, 10, new IntersectionCount());
+        assertArrayEquals(topK.getIndices(), single.getIndices());
+        assertArrayEquals(topK.getScores(), single.getScores());
+    }
+
+    @Test
+    public void shouldPruneWithBounds() throws Exception {
+        final AtomicInteger scored = new AtomicInteger();
+        LongComparisonOp counting = new LongComparisonOp() {
+            @Override
+            public long compute(final ImmutableBitSet target, final ImmutableBitSet toCompare) {
+                scored.incrementAndGet();
+                return ImmutableBitSet.andCount(target, toCompare);
+            }
+        };
+        long[] cardinalities = new long[bs.length];
+        for (int i = 0; i < bs.length; i++) {
+            cardinalities[i] = bs[i].cardinality();
+        }
+        TopK pruned = bitsetOperationsExecutor.topK(bs, query, BS_SIZE, 5, counting, cardinalities);
+        TopK full = bitsetOperationsExecutor.topK(bs, query, BS_SIZE, 5, new IntersectionCount());
+        assertArrayEquals(full.getIndices(), pruned.getIndices());
+        assertArrayEquals(full.getScores(), pruned.getScores());
+        assertTrue(scored.get() < bs.length);
+    }
+
+    @Test
+    public void shouldBreakTiesByIndex() throws Exception {
+        ImmutableBitSet same = TestBitSets.of(BS_SIZE, 1, 2, 3);
+        ImmutableBitSet[] ties = new ImmutableBitSet[] {TestBitSets.of(BS_SIZE, 1), same, same, same};
+        TopK topK = bitsetOperationsExecutor.topK(ties, same, BS_SIZE, 2, new IntersectionCount());
+        assertArrayEquals(new int[] {1, 2}, topK.getIndices());
+        assertArrayEquals(new long[] {3L, 3L}, topK.getScores());
+    }
+
+    @Test
+    public void shouldReturnFewerThanK() throws Exception {
+        TopK topK = bitsetOperationsExecutor.topK(new ImmutableBitSet[] {bs[0], bs[1]}, query, BS_SIZE, 5, new IntersectionCount());
+        assertEquals(2, topK.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectZeroK() throws Exception {
+        bitsetOperationsExecutor.topK(bs, query, BS_SIZE, 0, new IntersectionCount());
+    }
+}
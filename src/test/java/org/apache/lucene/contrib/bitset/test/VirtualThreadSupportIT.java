@@ -0,0 +1,133 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.StructuredExecutorService;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs against the multi-release jar built by the jdk21 profile, so that the Java 21 {@code VirtualThreadSupport} is the one loaded; skipped on older JVMs
+ */
+public class VirtualThreadSupportIT {
+    private static final int BS_SIZE = 1000;
+
+    private StructuredExecutorService threadPool;
+
+    @Before
+    public void setup() {
+        assumeTrue(javaVersion() >= 21);
+        threadPool = new StructuredExecutorService(2);
+    }
+
+    @After
+    public void teardown() {
+        if (threadPool != null) {
+            threadPool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldRunTasksOnVirtualThreads() throws Exception {
+        assertTrue(StructuredExecutorService.isVirtual());
+        List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        for (int i = 0; i < 4; i++) {
+            tasks.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    Thread thread = Thread.currentThread();
+                    // Thread.isVirtual() does not exist in the Java 8 API the tests are compiled against
+                    return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread) && thread.getName().startsWith("bitset-");
+                }
+            });
+        }
+        for (Future<Boolean> future : threadPool.invokeAll(tasks)) {
+            assertTrue(future.get());
+        }
+    }
+
+    @Test
+    public void shouldInterruptVirtualSiblingsOnFailure() throws Exception {
+        final AtomicInteger interrupted = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                try {
+                    Thread.sleep(60000L);
+                } catch (InterruptedException e) {
+                    interrupted.incrementAndGet();
+                    throw e;
+                }
+                return null;
+            }
+        });
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                Thread.sleep(20L);
+                throw new IllegalStateException("failing on purpose");
+            }
+        });
+
+        long startAt = System.currentTimeMillis();
+        List<Future<Void>> futures = threadPool.invokeAll(tasks);
+        assertTrue(System.currentTimeMillis() - startAt < 30000L);
+        assertEquals(1, interrupted.get());
+        assertTrue(futures.get(0).isCancelled());
+        try {
+            futures.get(1).get();
+            fail("expected an ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void shouldBackBitsetOperationsExecutor() throws Exception {
+        ImmutableBitSet[] bs = TestBitSets.random(new Random(13L), 30, BS_SIZE, 40);
+        BitsetOperationsExecutor sequential = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE);
+        BitsetOperationsExecutor bitsetOperationsExecutor = new BitsetOperationsExecutor(threadPool, 1).withParallelism(threadPool.getMaxParallelism());
+        TestBitSets.assertSameBits(BS_SIZE, sequential.perform(bs, BS_SIZE, new OR()), bitsetOperationsExecutor.perform(bs, BS_SIZE, new OR()));
+        TestBitSets.assertSameBits(BS_SIZE, sequential.perform(bs, BS_SIZE, new OR()), bitsetOperationsExecutor.performAsync(bs, BS_SIZE, new OR()).get());
+    }
+
+    private static int javaVersion() {
+        String version = System.getProperty("java.specification.version");
+        return version.startsWith("1.") ? Integer.parseInt(version.substring(2)) : Integer.parseInt(version);
+    }
+}
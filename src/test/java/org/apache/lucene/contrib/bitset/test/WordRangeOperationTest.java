@@ -0,0 +1,118 @@
+/*
+ * Parallel Bitset Operations
+ * Copyright (C) 2011 Federico Fissore
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, see
+ * http://www.gnu.org/licenses/lgpl-3.0.txt
+ */
+
+package org.apache.lucene.contrib.bitset.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.contrib.bitset.BitsetOperationsExecutor;
+import org.apache.lucene.contrib.bitset.ExecutionMode;
+import org.apache.lucene.contrib.bitset.ops.AND;
+import org.apache.lucene.contrib.bitset.ops.AssociativeOp;
+import org.apache.lucene.contrib.bitset.ops.NOT;
+import org.apache.lucene.contrib.bitset.ops.OR;
+import org.apache.lucene.contrib.bitset.ops.XOR;
+import org.dishevelled.bitset.ImmutableBitSet;
+import org.dishevelled.bitset.MutableBitSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WordRangeOperationTest {
+    private static final int BS_SIZE = 1000;
+
+    private ImmutableBitSet[] bs;
+    private ExecutorService threadPool;
+    private BitsetOperationsExecutor bitsetOperationsExecutor;
+
+    @Before
+    public void setup() {
+        bs = TestBitSets.random(new Random(42L), 257, BS_SIZE, 20);
+        threadPool = Executors.newCachedThreadPool();
+        bitsetOperationsExecutor = new BitsetOperationsExecutor(threadPool, 1);
+    }
+
+    @After
+    public void teardown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void shouldOrLikeSequential() throws Exception {
+        assertSameAsSequential(new OR());
+    }
+
+    @Test
+    public void shouldAndLikeSequential() throws Exception {
+        assertSameAsSequential(new AND());
+    }
+
+    @Test
+    public void shouldXorLikeSequential() throws Exception {
+        assertSameAsSequential(new XOR());
+    }
+
+    @Test
+    public void shouldAndNotLikeSequential() throws Exception {
+        assertSameAsSequential(new NOT());
+    }
+
+    @Test
+    public void shouldHandleShorterInputs() throws Exception {
+        ImmutableBitSet[] mixed = new ImmutableBitSet[] { TestBitSets.of(BS_SIZE, 1, 70, 999), TestBitSets.of(10, 3), TestBitSets.of(BS_SIZE, 500) };
+        MutableBitSet expected = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE).perform(mixed, BS_SIZE, new OR());
+        MutableBitSet actual = bitsetOperationsExecutor.perform(mixed, BS_SIZE, new OR(), ExecutionMode.WORD_RANGE);
+        TestBitSets.assertSameBits(BS_SIZE, expected, actual);
+    }
+
+    @Test
+    public void shouldIgnoreWordsOfLongerInputs() throws Exception {
+        ImmutableBitSet[] mixed = new ImmutableBitSet[] { TestBitSets.of(BS_SIZE, 1, 70, 999), TestBitSets.of(2 * BS_SIZE, 3, 1500), TestBitSets.of(BS_SIZE, 500) };
+        MutableBitSet sliced = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE).perform(mixed, BS_SIZE, new OR());
+        assertTrue(sliced.get(1500));
+        for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.WORD_RANGE, ExecutionMode.TILED}) {
+            MutableBitSet actual = bitsetOperationsExecutor.perform(mixed, BS_SIZE, new OR(), mode);
+            TestBitSets.assertSameBits(BS_SIZE, sliced, actual);
+            assertFalse(mode.toString(), actual.get(1500));
+            assertEquals(mode.toString(), sliced.cardinality() - 1, actual.cardinality());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequireWordwiseOp() throws Exception {
+        bitsetOperationsExecutor.perform(bs, BS_SIZE, new AssociativeOp() {
+            @Override
+            public void compute(final MutableBitSet accumulator, final ImmutableBitSet bitset) {
+                accumulator.or(bitset);
+            }
+        }, ExecutionMode.WORD_RANGE);
+    }
+
+    private void assertSameAsSequential(final AssociativeOp operation) throws Exception {
+        MutableBitSet expected = new BitsetOperationsExecutor(threadPool, Integer.MAX_VALUE).perform(bs, BS_SIZE, operation);
+        MutableBitSet actual = bitsetOperationsExecutor.perform(bs, BS_SIZE, operation, ExecutionMode.WORD_RANGE);
+        TestBitSets.assertSameBits(BS_SIZE, expected, actual);
+    }
+}